@@ -0,0 +1,66 @@
+package com.tictactoe;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Compares a JMH CSV result file against the committed baseline. Throughput that drops, or allocation per op
+ * that grows, by more than the tolerance counts as a regression and makes the exit status non-zero.
+ */
+public class BaselineCheck {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineCheck <baseline.csv> <results.csv> [--tolerance=20]");
+            System.exit(2);
+        }
+        double tolerance = new ServerOptions(args).getInt("tolerance", 20) / 100.0;
+        Map<String, Double> baseline = read(Paths.get(args[0]));
+        Map<String, Double> results = read(Paths.get(args[1]));
+
+        int regressions = 0;
+        for (Map.Entry<String, Double> entry : results.entrySet()) {
+            String key = entry.getKey();
+            Double before = baseline.get(key);
+            if (before == null) continue;
+            double after = entry.getValue();
+            boolean allocation = key.contains(":gc.alloc.rate.norm");
+            if (!allocation && key.contains(":")) continue;
+
+            boolean regressed = allocation
+                ? after > before * (1 + tolerance) + 1
+                : after < before * (1 - tolerance);
+            double change = (before == 0) ? 0 : (after - before) / before * 100;
+            System.out.printf("%-8s %-70s %14.3f -> %14.3f (%+.1f%%)%n",
+                regressed ? "REGRESS" : "ok", key, before, after, change);
+            if (regressed) regressions++;
+        }
+        System.out.println(regressions + " regression(s)");
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+
+    private static Map<String, Double> read(Path path) throws IOException {
+        Map<String, Double> scores = new LinkedHashMap<>();
+        List<String> lines = Files.readAllLines(path);
+        String[] header = split(lines.get(0));
+        int scoreColumn = Arrays.asList(header).indexOf("Score");
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isBlank()) continue;
+            String[] fields = split(line);
+            StringBuilder key = new StringBuilder(fields[0]);
+            for (int i = 0; i < header.length; i++) {
+                if (header[i].startsWith("Param: ") && i < fields.length && !fields[i].isEmpty()) {
+                    key.append(' ').append(header[i].substring(7)).append('=').append(fields[i]);
+                }
+            }
+            scores.put(key.toString(), Double.parseDouble(fields[scoreColumn]));
+        }
+        return scores;
+    }
+
+    private static String[] split(String line) {
+        String[] fields = line.split(",", -1);
+        for (int i = 0; i < fields.length; i++) fields[i] = fields[i].replace("\"", "");
+        return fields;
+    }
+}
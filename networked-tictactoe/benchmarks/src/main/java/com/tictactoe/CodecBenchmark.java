@@ -0,0 +1,81 @@
+package com.tictactoe;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+
+/** Parsing received messages and building the messages a finished game sends. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+    @Param({"text", "binary"})
+    public String codec;
+
+    private final Message message = new Message();
+    private final ByteBuffer out = ByteBuffer.allocate(Protocol.MAX_FRAME_LENGTH);
+    private final int[] winCells = {0, 1, 2};
+    private final byte[] winner = "alice".getBytes(StandardCharsets.UTF_8);
+    private Codec encoder;
+    private String[] lines;
+    private ByteBuffer[] frames;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        encoder = codec.equals("binary") ? BinaryCodec.INSTANCE : TextCodec.INSTANCE;
+        Message[] samples = {
+            new Message().set(Message.MOVE).move(1, 2, 'X'),
+            new Message().set(Message.TURN).player('O'),
+            new Message().set(Message.WIN).player('X').name(winner).cells(winCells, 3, 3),
+            new Message().set(Message.STATS).stats(3, 1, 2),
+            new Message().set(Message.RESTART_CONFIRM).confirm(true),
+            new Message().set(Message.RESTART_REQUEST).name(winner),
+            new Message().set(Message.MOVE).move(0, 0, 'O'),
+            new Message().set(Message.QUIT).name(winner)
+        };
+        lines = new String[samples.length];
+        frames = new ByteBuffer[samples.length];
+        for (int i = 0; i < samples.length; i++) {
+            lines[i] = samples[i].toString();
+            ByteBuffer frame = ByteBuffer.allocate(Protocol.MAX_FRAME_LENGTH);
+            BinaryCodec.INSTANCE.encode(samples[i], frame);
+            frame.flip().position(2);
+            frames[i] = frame.slice();
+        }
+    }
+
+    @Benchmark
+    public int decode() {
+        int i = next++ & 7;
+        if (encoder == TextCodec.INSTANCE) {
+            TextCodec.decode(lines[i], message);
+        } else {
+            ByteBuffer frame = frames[i];
+            frame.rewind();
+            BinaryCodec.decode(frame, message);
+        }
+        return message.getType();
+    }
+
+    @Benchmark
+    public int encodeMove() {
+        out.clear();
+        encoder.encode(message.set(Message.MOVE).move(1, 2, 'X'), out);
+        encoder.encode(message.set(Message.TURN).player('O'), out);
+        return out.position();
+    }
+
+    @Benchmark
+    public int encodeGameOver() {
+        out.clear();
+        encoder.encode(message.set(Message.WIN).player('X').name(winner).cells(winCells, 3, 3), out);
+        encoder.encode(message.set(Message.STATS).stats(3, 1, 2), out);
+        return out.position();
+    }
+}
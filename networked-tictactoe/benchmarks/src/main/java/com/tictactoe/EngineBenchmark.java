@@ -0,0 +1,80 @@
+package com.tictactoe;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/** Win and draw detection, replaying recorded random games so every op sees different board states. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark {
+    private static final int GAMES = 256;
+
+    @Param({"3:3", "7:4", "15:5"})
+    public String board;
+
+    private GameEngine engine;
+    private int size;
+    private int[][] games;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        String[] parts = board.split(":");
+        size = Integer.parseInt(parts[0]);
+        engine = GameEngine.create(size, Integer.parseInt(parts[1]));
+
+        Random random = new Random(42);
+        games = new int[GAMES][];
+        int[] cells = new int[size * size];
+        for (int g = 0; g < GAMES; g++) {
+            for (int i = 0; i < cells.length; i++) cells[i] = i;
+            for (int i = cells.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int t = cells[i];
+                cells[i] = cells[j];
+                cells[j] = t;
+            }
+            engine.reset();
+            int moves = 0;
+            int result = GameEngine.IN_PROGRESS;
+            while (result == GameEngine.IN_PROGRESS) {
+                int cell = cells[moves];
+                result = engine.play(cell / size, cell % size, (moves++ % 2 == 0) ? 'X' : 'O');
+            }
+            games[g] = Arrays.copyOf(cells, moves);
+        }
+    }
+
+    @Benchmark
+    public int playGame() {
+        int[] game = games[next++ & (GAMES - 1)];
+        engine.reset();
+        int result = GameEngine.IN_PROGRESS;
+        for (int i = 0; i < game.length; i++) {
+            result = engine.play(game[i] / size, game[i] % size, (i % 2 == 0) ? 'X' : 'O');
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int countLegalMoves() {
+        int[] game = games[next++ & (GAMES - 1)];
+        engine.reset();
+        for (int i = 0; i < game.length / 2; i++) {
+            engine.play(game[i] / size, game[i] % size, (i % 2 == 0) ? 'X' : 'O');
+        }
+        int legal = 0;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                if (engine.isLegal(row, col)) legal++;
+            }
+        }
+        return legal;
+    }
+}
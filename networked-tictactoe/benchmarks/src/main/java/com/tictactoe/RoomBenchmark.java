@@ -0,0 +1,101 @@
+package com.tictactoe;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+
+/** Whole games through a room, with both players writing into in-memory sinks instead of sockets. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoomBenchmark {
+    private static final int[][] X_WINS = {{0, 0}, {1, 0}, {0, 1}, {1, 1}, {0, 2}};
+
+    @Param({"text", "binary"})
+    public String codec;
+
+    private GameRoom room;
+    private SinkSession playerX;
+    private SinkSession playerO;
+    private String[] lines;
+    private ByteBuffer[] frames;
+
+    @Setup
+    public void setup() {
+        Codec encoder = codec.equals("binary") ? BinaryCodec.INSTANCE : TextCodec.INSTANCE;
+        room = new GameRoom(1, GameEngine.create(3, 3), null);
+        room.reserveSeat();
+        room.reserveSeat();
+        playerX = new SinkSession(room, 1, encoder, "alice");
+        playerO = new SinkSession(room, 2, encoder, "bob");
+        room.join(playerX);
+        room.join(playerO);
+
+        lines = new String[X_WINS.length];
+        frames = new ByteBuffer[X_WINS.length];
+        Message message = new Message();
+        for (int i = 0; i < X_WINS.length; i++) {
+            message.set(Message.MOVE).move(X_WINS[i][0], X_WINS[i][1], (i % 2 == 0) ? 'X' : 'O');
+            lines[i] = message.toString();
+            ByteBuffer frame = ByteBuffer.allocate(Protocol.MAX_FRAME_LENGTH);
+            BinaryCodec.INSTANCE.encode(message, frame);
+            frame.flip().position(2);
+            frames[i] = frame.slice();
+        }
+    }
+
+    @Benchmark
+    public long playGame() {
+        for (int i = 0; i < X_WINS.length; i++) {
+            room.makeMove(X_WINS[i][0], X_WINS[i][1], (i % 2 == 0) ? 'X' : 'O', (i % 2 == 0) ? playerX : playerO);
+        }
+        room.resetGame();
+        return playerX.bytes + playerO.bytes;
+    }
+
+    @Benchmark
+    public long playGameFromWire() {
+        for (int i = 0; i < X_WINS.length; i++) {
+            SinkSession player = (i % 2 == 0) ? playerX : playerO;
+            if (player.isBinary()) {
+                frames[i].rewind();
+                player.handleFrame(frames[i]);
+            } else {
+                player.handleLine(lines[i]);
+            }
+        }
+        room.resetGame();
+        return playerX.bytes + playerO.bytes;
+    }
+
+    /** Counts and drops whatever the room writes. */
+    static final class SinkSession extends PlayerSession {
+        long bytes = 0;
+
+        SinkSession(GameRoom room, int playerId, Codec codec, String name) {
+            super(room, playerId, new OutboundQueue(64 * 1024, OutboundQueue.Overflow.COALESCE));
+            this.codec = codec;
+            this.playerName = name;
+            this.nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            room.setPlayerName(getSymbol(), nameBytes);
+        }
+
+        @Override
+        protected void wakeWriter() {
+            ByteBuffer buffer;
+            while ((buffer = outbound.peek()) != null) {
+                bytes += buffer.remaining();
+                outbound.remove();
+            }
+        }
+
+        @Override
+        protected void closeAsync() {
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.tictactoe;
+
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A server-hosted opponent. It sits in a room like any other player and reads the room's binary broadcasts, but
+ * it thinks on a shared fork/join pool with a per-move time budget instead of a socket.
+ */
+class AiPlayer extends PlayerSession {
+    static final String NAME = "AI";
+    private static final Map<Integer, AlphaBeta> SEARCHES = new ConcurrentHashMap<>();
+
+    private final ForkJoinPool pool;
+    private final long budgetNanos;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final List<Message> batch = new ArrayList<>();
+    private final byte[] board;
+    private final int size;
+    private char turn = 'X';
+    private boolean gameOver = true;
+    private volatile boolean left = false;
+
+    AiPlayer(GameRoom room, int playerId, ForkJoinPool pool, long budgetNanos) {
+        super(room, playerId, new OutboundQueue(64 * 1024, OutboundQueue.Overflow.COALESCE));
+        this.pool = pool;
+        this.budgetNanos = budgetNanos;
+        this.size = room.getBoardSize();
+        this.board = new byte[size * size];
+        this.codec = BinaryCodec.INSTANCE;
+        this.playerName = NAME;
+        this.nameBytes = NAME.getBytes(StandardCharsets.UTF_8);
+        room.setPlayerName(getSymbol(), nameBytes);
+    }
+
+    /** Creates a pool for AI searches with low-priority threads, so humans' event loops keep their cores. */
+    static ForkJoinPool newPool(int threads) {
+        return new ForkJoinPool(Math.max(1, threads), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("ai-" + thread.getPoolIndex());
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    @Override
+    protected boolean isRemote() {
+        return false;
+    }
+
+    @Override
+    protected void wakeWriter() {
+        if (pending.getAndIncrement() == 0) pool.execute(this::drain);
+    }
+
+    @Override
+    protected void closeAsync() {
+        outbound.close();
+    }
+
+    @Override
+    protected void opponentLeft() {
+        if (left) return;
+        left = true;
+        pool.execute(() -> {
+            outbound.close();
+            room.leave(this);
+        });
+    }
+
+    private void drain() {
+        int seen;
+        do {
+            seen = pending.get();
+            ByteBuffer buffer;
+            while ((buffer = outbound.peek()) != null) {
+                ByteBuffer frames = buffer.duplicate();
+                while (frames.remaining() >= 2) {
+                    int length = frames.getShort() & 0xFFFF;
+                    ByteBuffer frame = frames.slice(frames.position(), length);
+                    frames.position(frames.position() + length);
+                    batch.clear();
+                    ClientConnection.decodeFrame(frame, batch);
+                    for (Message message : batch) apply(message);
+                }
+                outbound.remove();
+            }
+            resyncIfNeeded();
+            if (!left && !gameOver && turn == getSymbol()) play();
+        } while (!pending.compareAndSet(seen, 0));
+    }
+
+    private void apply(Message message) {
+        switch (message.getType()) {
+            case Message.START:
+            case Message.RESET:
+                Arrays.fill(board, (byte) 0);
+                turn = 'X';
+                gameOver = false;
+                break;
+            case Message.MOVE:
+                board[message.getRow() * size + message.getCol()] = (byte) (message.getPlayer() == 'X' ? 1 : 2);
+                break;
+            case Message.TURN:
+                turn = message.getPlayer();
+                break;
+            case Message.WIN:
+            case Message.DRAW:
+                gameOver = true;
+                break;
+            case Message.RESTART_REQUEST:
+                if (!NAME.equals(message.getName())) room.confirmRestart(true, this);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void play() {
+        int player = (getSymbol() == 'X') ? 1 : 2;
+        int cell;
+        if (size == 3 && room.getWinLength() == 3) {
+            int[] cells = new int[9];
+            for (int i = 0; i < 9; i++) cells[i] = board[i];
+            cell = PerfectPlay.bestMove(cells);
+        } else {
+            AlphaBeta search = SEARCHES.computeIfAbsent(size * 64 + room.getWinLength(),
+                key -> new AlphaBeta(size, room.getWinLength()));
+            cell = search.bestMove(board, player, budgetNanos);
+        }
+        if (cell < 0) return;
+        turn = 0;
+        room.makeMove(cell / size, cell % size, getSymbol(), this);
+    }
+}
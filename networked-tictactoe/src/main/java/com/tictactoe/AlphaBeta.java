@@ -0,0 +1,307 @@
+package com.tictactoe;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Iterative-deepening negamax with alpha-beta pruning for N x N, k-in-a-row boards. Positions are cached in a
+ * Zobrist-hashed transposition table shared by every search on boards of this shape. At the root, the first move is
+ * searched alone to set a bound and the rest are searched in parallel with fork/join.
+ */
+final class AlphaBeta {
+    static final int WIN_SCORE = 1_000_000;
+    private static final int INFINITY = Integer.MAX_VALUE - 1;
+    private static final int TABLE_BITS = 20;
+    private static final int EXACT = 0;
+    private static final int LOWER = 1;
+    private static final int UPPER = 2;
+
+    private final int size;
+    private final int winLength;
+    private final int cells;
+    private final long[][] zobrist;
+    private final long sideToMoveKey;
+    private final int[][] windows;
+    private final long[] windowWeights;
+    /** Two longs per entry: key ^ data, then data, so a torn write from another thread fails the check. */
+    private final long[] table = new long[2 << TABLE_BITS];
+
+    AlphaBeta(int size, int winLength) {
+        this.size = size;
+        this.winLength = winLength;
+        this.cells = size * size;
+        Random random = new Random(size * 31L + winLength);
+        zobrist = new long[cells][2];
+        for (long[] keys : zobrist) {
+            keys[0] = random.nextLong();
+            keys[1] = random.nextLong();
+        }
+        sideToMoveKey = random.nextLong();
+
+        List<int[]> lines = new ArrayList<>();
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                for (int[] d : directions) {
+                    int endRow = row + d[0] * (winLength - 1);
+                    int endCol = col + d[1] * (winLength - 1);
+                    if (endRow < 0 || endRow >= size || endCol < 0 || endCol >= size) continue;
+                    int[] window = new int[winLength];
+                    for (int i = 0; i < winLength; i++) window[i] = (row + d[0] * i) * size + col + d[1] * i;
+                    lines.add(window);
+                }
+            }
+        }
+        windows = lines.toArray(new int[0][]);
+        windowWeights = new long[winLength + 1];
+        for (int i = 1; i <= winLength; i++) windowWeights[i] = 1L << (3 * Math.min(i, 9));
+    }
+
+    /**
+     * Returns the cell index to play for {@code player} (1 for X, 2 for O), searching deeper until the time budget
+     * runs out. Must be called from a fork/join worker so the root moves can be searched in parallel.
+     */
+    int bestMove(byte[] board, int player, long budgetNanos) {
+        Search search = new Search(System.nanoTime() + budgetNanos);
+        Position root = new Position(board.clone());
+        int[] moves = root.candidates(0, -1);
+        if (moves.length == 0) return -1;
+
+        int best = moves[0];
+        for (int depth = 1; depth <= cells - root.count; depth++) {
+            int[] scores = searchRoot(root, moves, depth, player, search);
+            if (search.stopped) break;
+            int bestIndex = 0;
+            for (int i = 1; i < moves.length; i++) {
+                if (scores[i] > scores[bestIndex]) bestIndex = i;
+            }
+            best = moves[bestIndex];
+            moves[bestIndex] = moves[0];
+            moves[0] = best;
+            if (Math.abs(scores[bestIndex]) >= WIN_SCORE - cells) break;
+        }
+        return best;
+    }
+
+    private int[] searchRoot(Position root, int[] moves, int depth, int player, Search search) {
+        int[] scores = new int[moves.length];
+        Position first = root.copy(search);
+        scores[0] = first.scoreMove(moves[0], depth, -INFINITY, INFINITY, player);
+        int alpha = scores[0];
+        if (moves.length == 1 || search.stopped) return scores;
+
+        List<ForkJoinTask<Integer>> tasks = new ArrayList<>(moves.length - 1);
+        for (int i = 1; i < moves.length; i++) {
+            int move = moves[i];
+            Position position = root.copy(search);
+            tasks.add(ForkJoinTask.adapt(() -> position.scoreMove(move, depth, alpha, INFINITY, player)));
+        }
+        ForkJoinTask.invokeAll(tasks);
+        for (int i = 1; i < moves.length; i++) scores[i] = tasks.get(i - 1).join();
+        return scores;
+    }
+
+    private static final class Search {
+        final long deadline;
+        volatile boolean stopped = false;
+
+        Search(long deadline) {
+            this.deadline = deadline;
+        }
+    }
+
+    /** One thread's working board with an incrementally updated hash. */
+    private final class Position {
+        final byte[] board;
+        final int[][] moveBuffers;
+        final int[] candidateScores;
+        Search search;
+        long hash;
+        int count;
+        int nodes;
+
+        Position(byte[] board) {
+            this.board = board;
+            this.moveBuffers = new int[cells + 1][];
+            this.candidateScores = new int[cells];
+            for (int i = 0; i < cells; i++) {
+                if (board[i] != 0) {
+                    hash ^= zobrist[i][board[i] - 1];
+                    count++;
+                }
+            }
+        }
+
+        Position copy(Search search) {
+            Position position = new Position(board.clone());
+            position.search = search;
+            return position;
+        }
+
+        /** Score of {@code player} making {@code move}, from that player's point of view. */
+        int scoreMove(int move, int depth, int alpha, int beta, int player) {
+            place(move, player);
+            int score;
+            if (wins(move, player)) score = WIN_SCORE;
+            else if (count == cells) score = 0;
+            else score = -negamax(depth - 1, -beta, -alpha, 3 - player, 1);
+            remove(move, player);
+            return score;
+        }
+
+        private int negamax(int depth, int alpha, int beta, int player, int ply) {
+            if ((++nodes & 1023) == 0 && System.nanoTime() > search.deadline) search.stopped = true;
+            if (search.stopped) return 0;
+
+            long key = (player == 2) ? hash ^ sideToMoveKey : hash;
+            int slot = (int) (key & ((1 << TABLE_BITS) - 1)) * 2;
+            long data = table[slot + 1];
+            int ttMove = -1;
+            if ((table[slot] ^ data) == key && data != 0) {
+                ttMove = (int) (data & 0x1FF) - 1;
+                int ttDepth = (int) ((data >>> 9) & 0xFF);
+                int flag = (int) ((data >>> 17) & 0x3);
+                int ttScore = fromTable((int) (data >>> 32), ply);
+                if (ttDepth >= depth) {
+                    if (flag == EXACT) return ttScore;
+                    if (flag == LOWER && ttScore >= beta) return ttScore;
+                    if (flag == UPPER && ttScore <= alpha) return ttScore;
+                }
+            }
+            if (depth == 0) return evaluate(player);
+
+            int[] moves = candidates(ply, ttMove);
+            int originalAlpha = alpha;
+            int best = -INFINITY;
+            int bestMove = -1;
+            for (int i = 0; i < moves.length && moves[i] >= 0; i++) {
+                int move = moves[i];
+                place(move, player);
+                int score;
+                if (wins(move, player)) score = WIN_SCORE - ply;
+                else if (count == cells) score = 0;
+                else score = -negamax(depth - 1, -beta, -alpha, 3 - player, ply + 1);
+                remove(move, player);
+                if (search.stopped) return 0;
+                if (score > best) {
+                    best = score;
+                    bestMove = move;
+                }
+                if (score > alpha) alpha = score;
+                if (alpha >= beta) break;
+            }
+
+            int flag = (best <= originalAlpha) ? UPPER : (best >= beta) ? LOWER : EXACT;
+            long entry = (bestMove + 1) | ((long) Math.min(depth, 255) << 9) | ((long) flag << 17)
+                | ((long) toTable(best, ply) << 32);
+            table[slot] = key ^ entry;
+            table[slot + 1] = entry;
+            return best;
+        }
+
+        /**
+         * Win scores count plies from the root, but a position can be reached at any ply, so the table keeps them
+         * counted from the position itself and converts them back on the way out.
+         */
+        private static int toTable(int score, int ply) {
+            if (score >= INFINITY || score <= -INFINITY) return score;
+            return (score > WIN_SCORE / 2) ? score + ply : (score < -WIN_SCORE / 2) ? score - ply : score;
+        }
+
+        private static int fromTable(int score, int ply) {
+            if (score >= INFINITY || score <= -INFINITY) return score;
+            return (score > WIN_SCORE / 2) ? score - ply : (score < -WIN_SCORE / 2) ? score + ply : score;
+        }
+
+        /**
+         * Empty cells next to a piece, most crowded neighbourhood first, with {@code first} moved to the front;
+         * the center on an empty board. The returned buffer is reused per ply and ends at the first -1.
+         */
+        int[] candidates(int ply, int first) {
+            int[] moves = moveBuffers[ply];
+            if (moves == null) moves = moveBuffers[ply] = new int[cells + 1];
+            int n = 0;
+            if (count == 0) {
+                moves[n++] = (size / 2) * size + size / 2;
+            } else {
+                for (int cell = 0; cell < cells; cell++) {
+                    if (board[cell] != 0) continue;
+                    int neighbours = neighbours(cell);
+                    if (neighbours == 0) continue;
+                    int score = (cell == first) ? Integer.MAX_VALUE : neighbours;
+                    int i = n++;
+                    while (i > 0 && candidateScores[moves[i - 1]] < score) {
+                        moves[i] = moves[i - 1];
+                        i--;
+                    }
+                    candidateScores[cell] = score;
+                    moves[i] = cell;
+                }
+            }
+            moves[n] = -1;
+            return (ply == 0) ? Arrays.copyOf(moves, n) : moves;
+        }
+
+        private int neighbours(int cell) {
+            int row = cell / size;
+            int col = cell % size;
+            int total = 0;
+            for (int r = Math.max(0, row - 1); r <= Math.min(size - 1, row + 1); r++) {
+                for (int c = Math.max(0, col - 1); c <= Math.min(size - 1, col + 1); c++) {
+                    if (board[r * size + c] != 0) total++;
+                }
+            }
+            return total;
+        }
+
+        private void place(int cell, int player) {
+            board[cell] = (byte) player;
+            hash ^= zobrist[cell][player - 1];
+            count++;
+        }
+
+        private void remove(int cell, int player) {
+            board[cell] = 0;
+            hash ^= zobrist[cell][player - 1];
+            count--;
+        }
+
+        private boolean wins(int cell, int player) {
+            int row = cell / size;
+            int col = cell % size;
+            return run(row, col, 0, 1, player) >= winLength || run(row, col, 1, 0, player) >= winLength ||
+                run(row, col, 1, 1, player) >= winLength || run(row, col, 1, -1, player) >= winLength;
+        }
+
+        private int run(int row, int col, int dRow, int dCol, int player) {
+            int length = 1;
+            for (int sign = -1; sign <= 1; sign += 2) {
+                int r = row + sign * dRow;
+                int c = col + sign * dCol;
+                while (r >= 0 && r < size && c >= 0 && c < size && board[r * size + c] == player) {
+                    length++;
+                    r += sign * dRow;
+                    c += sign * dCol;
+                }
+            }
+            return length;
+        }
+
+        /** Open windows weighted by how full they are, from {@code player}'s point of view. */
+        private int evaluate(int player) {
+            long score = 0;
+            for (int[] window : windows) {
+                int x = 0;
+                int o = 0;
+                for (int cell : window) {
+                    if (board[cell] == 1) x++;
+                    else if (board[cell] == 2) o++;
+                }
+                if (o == 0) score += windowWeights[x];
+                else if (x == 0) score -= windowWeights[o];
+            }
+            score = Math.max(-WIN_SCORE / 2, Math.min(WIN_SCORE / 2, score));
+            return (int) ((player == 1) ? score : -score);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.tictactoe;
+
+import java.nio.*;
+
+/**
+ * Length-prefixed frames: a two byte length covering the rest of the frame, a one byte opcode (the
+ * Message type) and the payload. Cells are packed into one byte as row << 4 | col. A BATCH frame's
+ * payload is a sequence of complete frames that belong to the same game event.
+ */
+public final class BinaryCodec implements Codec {
+    public static final BinaryCodec INSTANCE = new BinaryCodec();
+
+    private BinaryCodec() {
+    }
+
+    @Override
+    public void encode(Message m, ByteBuffer out) {
+        int start = out.position();
+        out.putShort((short) 0);
+        out.put((byte) m.type);
+        switch (m.type) {
+            case Message.MOVE:
+                out.put((byte) (m.row << 4 | m.col));
+                out.put((byte) m.player);
+                break;
+            case Message.TURN:
+                out.put((byte) m.player);
+                break;
+            case Message.WIN:
+                out.put((byte) m.player);
+                putName(out, m.name);
+                out.put((byte) m.cellCount);
+                for (int i = 0; i < m.cellCount; i++) {
+                    out.put((byte) (m.getCellRow(i) << 4 | m.getCellCol(i)));
+                }
+                break;
+            case Message.STATS:
+                out.putInt(m.xWins);
+                out.putInt(m.oWins);
+                out.putInt(m.draws);
+                break;
+            case Message.RESTART_CONFIRM:
+                out.put((byte) (m.confirm ? 1 : 0));
+                break;
+            case Message.SESSION:
+                out.putLong(m.token);
+                break;
+            case Message.SEQ:
+                out.putInt(m.sequence);
+                break;
+            case Message.RESTART_REQUEST:
+            case Message.RESTART_DECLINED:
+            case Message.QUIT:
+            case Message.NAME:
+                putName(out, m.name);
+                break;
+            default:
+                break;
+        }
+        out.putShort(start, (short) (out.position() - start - 2));
+    }
+
+    private static void putName(ByteBuffer out, byte[] name) {
+        if (name == null) {
+            out.putShort((short) 0);
+        } else {
+            out.putShort((short) name.length);
+            out.put(name);
+        }
+    }
+
+    /** Decodes the frame between position and limit, i.e. everything after the length prefix. */
+    public static void decode(ByteBuffer frame, Message m) {
+        m.set(frame.get() & 0xFF);
+        switch (m.type) {
+            case Message.MOVE:
+                int cell = frame.get() & 0xFF;
+                m.move(cell >>> 4, cell & 0x0F, (char) frame.get());
+                break;
+            case Message.TURN:
+                m.player((char) frame.get());
+                break;
+            case Message.WIN:
+                m.player((char) frame.get());
+                m.name(getName(frame));
+                int count = frame.get() & 0xFF;
+                if (m.cells == null || m.cells.length < count) m.cells = new int[Math.max(count, 16)];
+                for (int i = 0; i < count; i++) {
+                    int packed = frame.get() & 0xFF;
+                    m.cells[i] = (packed >>> 4) * 16 + (packed & 0x0F);
+                }
+                m.cellCount = count;
+                m.boardSize = 16;
+                break;
+            case Message.STATS:
+                m.stats(frame.getInt(), frame.getInt(), frame.getInt());
+                break;
+            case Message.RESTART_CONFIRM:
+                m.confirm(frame.get() != 0);
+                break;
+            case Message.SESSION:
+                m.token(frame.getLong());
+                break;
+            case Message.SEQ:
+                m.sequence(frame.getInt());
+                break;
+            case Message.RESTART_REQUEST:
+            case Message.RESTART_DECLINED:
+            case Message.QUIT:
+            case Message.NAME:
+                if (frame.hasRemaining()) m.name(getName(frame));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Decodes a frame from a player, which can only be a request: MOVE, RESTART_REQUEST, RESTART_CONFIRM, QUIT, PONG
+     * or the NAME of the handshake. False for anything else or a frame too short for its type, without throwing.
+     */
+    static boolean decodeRequest(ByteBuffer frame, Message m) {
+        m.set(frame.get() & 0xFF);
+        switch (m.type) {
+            case Message.MOVE:
+                if (frame.remaining() < 2) return false;
+                int cell = frame.get() & 0xFF;
+                m.move(cell >>> 4, cell & 0x0F, (char) frame.get());
+                return true;
+            case Message.RESTART_CONFIRM:
+                if (!frame.hasRemaining()) return false;
+                m.confirm(frame.get() != 0);
+                return true;
+            case Message.NAME:
+                if (frame.remaining() < 2 || frame.remaining() - 2 < (frame.getShort(frame.position()) & 0xFFFF)) {
+                    return false;
+                }
+                m.name(getName(frame));
+                return true;
+            case Message.RESTART_REQUEST:
+            case Message.QUIT:
+            case Message.PONG:
+                // the server knows who is asking; a name after the type is ignored
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static byte[] getName(ByteBuffer frame) {
+        int length = frame.getShort() & 0xFFFF;
+        if (length == 0) return null;
+        byte[] name = new byte[length];
+        frame.get(name);
+        return name;
+    }
+}
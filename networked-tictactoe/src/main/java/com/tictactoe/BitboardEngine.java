@@ -0,0 +1,117 @@
+package com.tictactoe;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/** Boards of up to 64 cells: one long per player, checked against the precomputed win lines through the last move. */
+final class BitboardEngine implements GameEngine {
+    private static final Map<Integer, long[][]> LINE_CACHE = new ConcurrentHashMap<>();
+
+    private final int size;
+    private final int winLength;
+    private final long[][] linesThroughCell;
+    private long xBits;
+    private long oBits;
+    private int moves;
+    private long winLine;
+
+    BitboardEngine(int size, int winLength) {
+        this.size = size;
+        this.winLength = winLength;
+        this.linesThroughCell = LINE_CACHE.computeIfAbsent(size * 64 + winLength, k -> buildLines(size, winLength));
+    }
+
+    private static long[][] buildLines(int size, int winLength) {
+        List<List<Long>> byCell = new ArrayList<>();
+        for (int i = 0; i < size * size; i++) byCell.add(new ArrayList<>());
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for (int[] d : directions) {
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    int endRow = row + d[0] * (winLength - 1);
+                    int endCol = col + d[1] * (winLength - 1);
+                    if (endRow < 0 || endRow >= size || endCol < 0 || endCol >= size) continue;
+                    long line = 0;
+                    for (int i = 0; i < winLength; i++) {
+                        line |= 1L << ((row + d[0] * i) * size + col + d[1] * i);
+                    }
+                    for (int i = 0; i < winLength; i++) {
+                        byCell.get((row + d[0] * i) * size + col + d[1] * i).add(line);
+                    }
+                }
+            }
+        }
+        long[][] lines = new long[size * size][];
+        for (int i = 0; i < lines.length; i++) {
+            List<Long> cellLines = byCell.get(i);
+            lines[i] = new long[cellLines.size()];
+            for (int j = 0; j < lines[i].length; j++) lines[i][j] = cellLines.get(j);
+        }
+        return lines;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int winLength() {
+        return winLength;
+    }
+
+    @Override
+    public boolean isLegal(int row, int col) {
+        if (row < 0 || row >= size || col < 0 || col >= size) return false;
+        return ((xBits | oBits) & (1L << (row * size + col))) == 0;
+    }
+
+    @Override
+    public int play(int row, int col, char player) {
+        int cell = row * size + col;
+        long bits;
+        if (player == 'X') bits = xBits |= 1L << cell;
+        else bits = oBits |= 1L << cell;
+        moves++;
+
+        for (long line : linesThroughCell[cell]) {
+            if ((bits & line) == line) {
+                winLine = line;
+                return WIN;
+            }
+        }
+        return (moves == size * size) ? DRAW : IN_PROGRESS;
+    }
+
+    @Override
+    public char cellAt(int row, int col) {
+        long bit = 1L << (row * size + col);
+        if ((xBits & bit) != 0) return 'X';
+        if ((oBits & bit) != 0) return 'O';
+        return '\0';
+    }
+
+    @Override
+    public int moveCount() {
+        return moves;
+    }
+
+    @Override
+    public int winningCells(int[] out) {
+        int count = 0;
+        long line = winLine;
+        while (line != 0) {
+            out[count++] = Long.numberOfTrailingZeros(line);
+            line &= line - 1;
+        }
+        return count;
+    }
+
+    @Override
+    public void reset() {
+        xBits = 0;
+        oBits = 0;
+        moves = 0;
+        winLine = 0;
+    }
+}
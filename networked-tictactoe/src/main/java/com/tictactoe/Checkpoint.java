@@ -0,0 +1,223 @@
+package com.tictactoe;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+import java.util.zip.*;
+
+/**
+ * Keeps every game in progress in a memory-mapped file, so that after a restart the server carries on with them and
+ * their players resume as if only their connection had dropped. A writer thread wakes every interval and copies out
+ * just the rooms that changed since it last did, each under its own room's lock for as long as the copy takes, then
+ * forces the file once for the whole pass. No game thread ever waits for the disk.
+ *
+ * <p>Each room has a pair of fixed-size slots that it writes in turn, each with a checksum and the number of the pass
+ * that wrote it. A write torn by a crash fails its checksum and the room comes back from its other slot, one pass
+ * older. A room that is gone is overwritten with an empty record, and its slots are reused.
+ */
+public class Checkpoint {
+    private static final int MAGIC = 0x54544350;
+    private static final int FILE_HEADER = 64;
+    private static final int SLOT_HEADER = 16;
+    private static final int INITIAL_PAIRS = 256;
+
+    private final Path file;
+    private final long intervalNanos;
+    private final RoomManager rooms;
+    private final int slotBytes;
+    private final ByteBuffer scratch;
+    private final CRC32 crc = new CRC32();
+    /** The slots each room was written to, by room id. Only the writer thread touches these, once it has started. */
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    /** Slots whose pair holds nothing, each the slot of its pair to write next. */
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final Thread thread;
+    private final FileChannel channel;
+    private MappedByteBuffer map;
+    private int pairs;
+    private long pass;
+    private volatile boolean closed = false;
+
+    private static final class Entry {
+        final GameRoom room;
+        final int pair;
+        int next;
+        int changes;
+
+        Entry(GameRoom room, int slot) {
+            this.room = room;
+            this.pair = slot / 2;
+            this.next = slot % 2;
+        }
+    }
+
+    /** Opens {@code file}, creating it if need be, for the games of {@code rooms}. Call {@link #restore} next. */
+    public Checkpoint(Path file, long intervalMillis, RoomManager rooms) throws IOException {
+        this.file = file;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.rooms = rooms;
+        int record = GameRoom.maxCheckpointLength(rooms.getBoardSize());
+        this.slotBytes = (SLOT_HEADER + record + 63) & ~63;
+        this.scratch = ByteBuffer.allocate(record);
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        this.thread = Thread.ofPlatform().daemon().name("checkpoint-writer").unstarted(this::run);
+    }
+
+    /**
+     * Brings back every game in the file, each with its seats suspended until their players resume, and returns how
+     * many. A file written for another board is ignored and overwritten.
+     */
+    public int restore() throws IOException {
+        long start = System.nanoTime();
+        long length = channel.size();
+        if (length >= FILE_HEADER && !matchesHeader()) {
+            Log.warn(Log.SERVER, 0, 0, "checkpoint " + file + " is for another board, starting without it");
+            channel.truncate(0);
+            length = 0;
+        }
+        pairs = (int) Math.max(INITIAL_PAIRS, (length - FILE_HEADER) / (2L * slotBytes));
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_HEADER + 2L * slotBytes * pairs);
+        map.putInt(0, MAGIC).putInt(4, rooms.getBoardSize()).putInt(8, rooms.getWinLength()).putInt(12, slotBytes);
+        map.force(0, FILE_HEADER);
+
+        int restored = 0;
+        for (int pair = pairs - 1; pair >= 0; pair--) {
+            long first = writtenBy(2 * pair);
+            long second = writtenBy(2 * pair + 1);
+            int slot = (second > first) ? 2 * pair + 1 : 2 * pair;
+            pass = Math.max(pass, Math.max(first, second));
+            int recordLength = (Math.max(first, second) < 0) ? 0 : map.getInt(offset(slot));
+            if (recordLength == 0) {
+                freeSlots.push(slot ^ 1);
+                continue;
+            }
+            GameRoom room = rooms.restoreRoom(map.slice(offset(slot) + SLOT_HEADER, recordLength));
+            Entry entry = new Entry(room, slot ^ 1);
+            entry.changes = room.getChanges();
+            entries.put(room.getId(), entry);
+            restored++;
+        }
+        if (restored > 0) {
+            Log.info(Log.SERVER, 0, 0, "checkpoint: " + restored + " games restored in " +
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        }
+        return restored;
+    }
+
+    public void start() {
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+    }
+
+    /** Writes one last pass, so a server stopped on purpose loses no moves. Called once on shutdown. */
+    public void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            LockSupport.parkNanos(intervalNanos);
+            write();
+        }
+        write();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            Log.warn(Log.SERVER, 0, 0, "checkpoint close failed: " + e);
+        }
+    }
+
+    /** Writes every room that changed since the last pass and empties the slots of rooms that are gone. */
+    private void write() {
+        pass++;
+        int low = Integer.MAX_VALUE;
+        int high = -1;
+        try {
+            for (GameRoom room : rooms.getRooms()) {
+                Entry entry = entries.get(room.getId());
+                // read before copying, so a change made during the copy is written again next pass
+                int changes = room.getChanges();
+                if (entry != null && entry.changes == changes) continue;
+                scratch.clear();
+                if (!room.checkpoint(scratch)) continue;
+                if (entry == null) {
+                    entry = new Entry(room, allocate());
+                    entries.put(room.getId(), entry);
+                }
+                entry.changes = changes;
+                int slot = put(entry, scratch.flip());
+                low = Math.min(low, slot);
+                high = Math.max(high, slot);
+            }
+            for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+                Entry entry = it.next();
+                if (rooms.getRoom(entry.room.getId()) == entry.room) continue;
+                int slot = put(entry, scratch.clear().flip());
+                low = Math.min(low, slot);
+                high = Math.max(high, slot);
+                freeSlots.push(slot ^ 1);
+                it.remove();
+            }
+        } catch (IOException e) {
+            Log.error(Log.SERVER, 0, 0, "checkpoint write failed: " + e);
+        }
+        if (high >= 0) map.force(offset(low), offset(high + 1) - offset(low));
+    }
+
+    /** Writes {@code record} into the next slot of the entry's pair and returns the slot. */
+    private int put(Entry entry, ByteBuffer record) {
+        int slot = 2 * entry.pair + entry.next;
+        entry.next ^= 1;
+        int at = offset(slot);
+        map.putLong(at + 8, pass).put(at + SLOT_HEADER, record, 0, record.remaining());
+        crc.reset();
+        crc.update(map.slice(at + 8, SLOT_HEADER - 8 + record.remaining()));
+        map.putInt(at, record.remaining()).putInt(at + 4, (int) crc.getValue());
+        return slot;
+    }
+
+    /** A slot to start a room in, growing the file when every pair is taken. */
+    private int allocate() throws IOException {
+        if (freeSlots.isEmpty()) {
+            int grown = pairs * 2;
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_HEADER + 2L * slotBytes * grown);
+            for (int pair = grown - 1; pair >= pairs; pair--) freeSlots.push(2 * pair);
+            pairs = grown;
+        }
+        return freeSlots.pop();
+    }
+
+    /** The pass that wrote the slot, or -1 if it holds no intact record. */
+    private long writtenBy(int slot) {
+        int at = offset(slot);
+        int length = map.getInt(at);
+        if (length < 0 || length > slotBytes - SLOT_HEADER) return -1;
+        crc.reset();
+        crc.update(map.slice(at + 8, SLOT_HEADER - 8 + length));
+        return ((int) crc.getValue() == map.getInt(at + 4)) ? map.getLong(at + 8) : -1;
+    }
+
+    private boolean matchesHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(16);
+        channel.read(header, 0);
+        return header.getInt(0) == MAGIC && header.getInt(4) == rooms.getBoardSize()
+            && header.getInt(8) == rooms.getWinLength() && header.getInt(12) == slotBytes;
+    }
+
+    private int offset(int slot) {
+        return FILE_HEADER + slot * slotBytes;
+    }
+}
@@ -6,28 +6,54 @@ import javax.swing.border.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
-import java.net.*;
-import javax.sound.sampled.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class Client extends JFrame {
-    private JButton[][] buttons = new JButton[3][3];
+    private static final long RECONNECT_TIMEOUT_MILLIS = 30000;
+    private static final int BLINK_MILLIS = 300;
+
+    private JButton[][] buttons;
+    private int boardSize = 3;
     private JLabel statusLabel;
+    private String lastStatus = "";
     private JLabel titleLabel;
     private JLabel statsLabel;
     private JButton restartButton;
     private JButton quitButton;
     private JPanel boardPanel;
 
+    // batches from the reader thread wait here until one EDT task applies all of them
+    private final Queue<List<Message>> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    // the board as the server describes it, and as the buttons currently show it
+    private char[] board;
+    private char[] shown;
+    private boolean boardEnabled = true;
+    private boolean shownEnabled = true;
+    private String status;
+    private SoundEngine.Sound sound;
+    private final List<Runnable> prompts = new ArrayList<>();
+
+    // one clock drives every blinking cell, and is stopped when the board is reset
+    private final Timer animationClock = new Timer(BLINK_MILLIS, e -> animate());
+    private final List<JButton> highlighted = new ArrayList<>();
+    private boolean blinkOn;
+
     private char playerSymbol;
     private String playerName;
-    private Socket socket;
-    private PrintWriter out;
-    private BufferedReader in;
+    private ClientConnection connection;
     private int myWins = 0;
     private int myLosses = 0;
     private int draws = 0;
 
-    private Clip backgroundClip, moveClip, errorClip, winClip, loseClip, drawClip;
+    private static final int SOUND_VOICES = 3;
+    private final SoundEngine sounds = new SoundEngine(SOUND_VOICES);
+    private SoundEngine.Sound backgroundSound, moveSound, errorSound, winSound, loseSound, drawSound;
 
     private final Color BG_COLOR = new Color(34, 40, 49);
     private final Color BUTTON_COLOR = new Color(57, 62, 70);
@@ -36,7 +62,7 @@ public class Client extends JFrame {
     private final Color X_COLOR = new Color(255, 107, 107);
     private final Color O_COLOR = new Color(78, 205, 196);
 
-    public Client(String serverAddress) {
+    public Client(String serverAddress, boolean binary) {
         setTitle("Tic-Tac-Toe");
         setSize(500, 650);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -45,33 +71,28 @@ public class Client extends JFrame {
         setResizable(false);
 
         loadSounds();
+        // ask before connecting: once seated, the server closes a connection that stays silent for too long
+        playerName = JOptionPane.showInputDialog(this, "Enter your name:");
 
         try {
-            socket = new Socket(serverAddress, 12345);
-            out = new PrintWriter(socket.getOutputStream(), true);
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-
-            String message = in.readLine();
-            if (message.startsWith("ASSIGN")) {
-                int playerId = Integer.parseInt(message.split(" ")[1]);
-                playerSymbol = (playerId == 1) ? 'X' : 'O';
-
-                playerName = JOptionPane.showInputDialog(this, "Enter your name:");
-                if (playerName == null || playerName.trim().isEmpty()) {
-                    playerName = "Player " + playerId;
-                }
-                out.println(playerName);
+            connection = new ClientConnection(serverAddress, 12345);
+            playerSymbol = connection.getSymbol();
+            boardSize = connection.getBoardSize();
+
+            if (playerName == null || playerName.trim().isEmpty()) {
+                playerName = "Player " + connection.getPlayerId();
             }
+            playerName = Protocol.truncateName(playerName);
+            connection.handshake(playerName, binary);
 
             initializeUI();
             new Thread(this::listenForUpdates).start();
             setLocationRelativeTo(null);
             setVisible(true);
 
-            if (backgroundClip != null) {
-                backgroundClip.loop(Clip.LOOP_CONTINUOUSLY);
-                backgroundClip.start();
-            }
+            // decoding waits until the window is up, so audio never delays the first frame
+            sounds.start();
+            sounds.loop(backgroundSound);
 
         } catch (IOException e) {
             JOptionPane.showMessageDialog(this, "Cannot connect to server!",
@@ -97,14 +118,18 @@ public class Client extends JFrame {
 
         add(titlePanel, BorderLayout.NORTH);
 
-        boardPanel = new JPanel(new GridLayout(3, 3, 8, 8));
+        buttons = new JButton[boardSize][boardSize];
+        board = new char[boardSize * boardSize];
+        shown = new char[boardSize * boardSize];
+        int gap = (boardSize > 5) ? 2 : 8;
+        boardPanel = new JPanel(new GridLayout(boardSize, boardSize, gap, gap));
         boardPanel.setBackground(BG_COLOR);
         boardPanel.setBorder(new EmptyBorder(10, 30, 10, 30));
 
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
+        for (int i = 0; i < boardSize; i++) {
+            for (int j = 0; j < boardSize; j++) {
                 buttons[i][j] = new JButton("");
-                buttons[i][j].setFont(new Font("Arial", Font.BOLD, 60));
+                buttons[i][j].setFont(new Font("Arial", Font.BOLD, 180 / boardSize));
                 buttons[i][j].setFocusPainted(false);
                 buttons[i][j].setBackground(BUTTON_COLOR);
                 buttons[i][j].setForeground(TEXT_COLOR);
@@ -171,133 +196,202 @@ public class Client extends JFrame {
 
     private void handleButtonClick(int row, int col) {
         if (buttons[row][col].getText().isEmpty()) {
-            out.println("MOVE " + row + " " + col + " " + playerSymbol);
+            send(() -> connection.sendMove(row, col));
         }
     }
 
-    private void listenForUpdates() {
+    private void send(Sender sender) {
         try {
-            String message;
-            while ((message = in.readLine()) != null) {
-                final String msg = message;
-                SwingUtilities.invokeLater(() -> processMessage(msg));
-            }
+            sender.send();
         } catch (IOException e) {
-            SwingUtilities.invokeLater(() -> {
-                JOptionPane.showMessageDialog(this, "Connection lost!",
-                        "Error", JOptionPane.ERROR_MESSAGE);
-                System.exit(1);
-            });
+            System.err.println("Send failed: " + e.getMessage());
+        }
+    }
+
+    private interface Sender {
+        void send() throws IOException;
+    }
+
+    /** Reads updates, resuming the game after a dropped connection for as long as the server holds the seat. */
+    private void listenForUpdates() {
+        ClientConnection.Listener listener = new ClientConnection.Listener() {
+            public void onBatch(List<Message> batch) {
+                pending.offer(batch);
+                if (drainScheduled.compareAndSet(false, true)) SwingUtilities.invokeLater(Client.this::drainUpdates);
+            }
+
+            public void onDisconnect(IOException e) {
+                SwingUtilities.invokeLater(() -> {
+                    lastStatus = statusLabel.getText();
+                    statusLabel.setText("Connection lost, reconnecting...");
+                });
+            }
+        };
+        connection.listen(listener);
+        while (connection.reconnect(RECONNECT_TIMEOUT_MILLIS)) {
+            SwingUtilities.invokeLater(() -> statusLabel.setText(lastStatus));
+            connection.listen(listener);
+        }
+        SwingUtilities.invokeLater(() -> {
+            JOptionPane.showMessageDialog(Client.this, "Connection lost!",
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            System.exit(1);
+        });
+    }
+
+    /**
+     * Applies everything received since the last run in one EDT task: the messages update the board model, then
+     * only the cells that differ from what is on screen are repainted, and sounds and dialogs follow once.
+     */
+    private void drainUpdates() {
+        // cleared first, so a batch that arrives from here on schedules another run
+        drainScheduled.set(false);
+        status = null;
+        sound = null;
+        List<Message> batch;
+        while ((batch = pending.poll()) != null) {
+            for (Message message : batch) processMessage(message);
         }
+
+        renderBoard();
+        if (status != null) statusLabel.setText(status);
+        playSound(sound);
+        // dialogs run a nested event loop, so they wait until this run's state is on screen
+        List<Runnable> shownPrompts = new ArrayList<>(prompts);
+        prompts.clear();
+        for (Runnable prompt : shownPrompts) prompt.run();
     }
 
-    private void processMessage(String message) {
-        String[] parts = message.split(" ");
-
-        if (parts[0].equals("START")) {
-            statusLabel.setText("Game started! Waiting...");
-        } else if (parts[0].equals("MOVE")) {
-            int row = Integer.parseInt(parts[1]);
-            int col = Integer.parseInt(parts[2]);
-            char player = parts[3].charAt(0);
-            buttons[row][col].setText(String.valueOf(player));
-            buttons[row][col].setForeground(player == 'X' ? X_COLOR : O_COLOR);
-            playSound(moveClip);
-        } else if (parts[0].equals("TURN")) {
-            char turn = parts[1].charAt(0);
-            if (turn == playerSymbol) {
-                statusLabel.setText("Your turn!");
-                enableBoard(true);
+    private void renderBoard() {
+        for (int i = 0; i < board.length; i++) {
+            if (board[i] == shown[i]) continue;
+            JButton button = buttons[i / boardSize][i % boardSize];
+            if (board[i] == '\0') {
+                button.setText("");
+                button.setBackground(BUTTON_COLOR);
             } else {
-                statusLabel.setText("Opponent's turn...");
-                enableBoard(false);
+                button.setText(String.valueOf(board[i]));
+                button.setForeground(board[i] == 'X' ? X_COLOR : O_COLOR);
             }
-        } else if (parts[0].equals("WIN")) {
-            handleWin(parts);
-        } else if (parts[0].equals("DRAW")) {
-            statusLabel.setText("Draw! 🤝");
-            enableBoard(false);
-            restartButton.setEnabled(true);
-            playSound(drawClip);
-        } else if (parts[0].equals("RESET")) {
-            resetBoard();
-        } else if (parts[0].equals("STATS")) {
-            updateStats(message);
-        } else if (parts[0].equals("WRONG_MOVE")) {
-            playSound(errorClip);
-            JOptionPane.showMessageDialog(this, "Invalid move!",
-                    "Error", JOptionPane.WARNING_MESSAGE);
-        } else if (parts[0].equals("RESTART_REQUEST")) {
-            handleRestartRequest(parts[1]);
-        } else if (parts[0].equals("RESTART_CONFIRMED")) {
-            statusLabel.setText("Restarting...");
-        } else if (parts[0].equals("RESTART_DECLINED")) {
-            JOptionPane.showMessageDialog(this, parts[1] + " declined restart.",
-                    "Declined", JOptionPane.INFORMATION_MESSAGE);
-        } else if (parts[0].equals("QUIT")) {
-            JOptionPane.showMessageDialog(this, parts[1] + " quit!",
-                    "Game Over", JOptionPane.INFORMATION_MESSAGE);
-            System.exit(0);
+            shown[i] = board[i];
+        }
+        if (boardEnabled != shownEnabled) {
+            for (int i = 0; i < boardSize; i++) {
+                for (int j = 0; j < boardSize; j++) {
+                    buttons[i][j].setEnabled(boardEnabled);
+                }
+            }
+            shownEnabled = boardEnabled;
+        }
+    }
+
+    private void processMessage(Message message) {
+        switch (message.getType()) {
+            case Message.START:
+                status = "Game started! Waiting...";
+                break;
+            case Message.MOVE:
+                board[message.getRow() * boardSize + message.getCol()] = message.getPlayer();
+                sound = moveSound;
+                break;
+            case Message.TURN:
+                if (message.getPlayer() == playerSymbol) {
+                    status = "Your turn!";
+                    boardEnabled = true;
+                } else {
+                    status = "Opponent's turn...";
+                    boardEnabled = false;
+                }
+                break;
+            case Message.WIN:
+                handleWin(message);
+                break;
+            case Message.DRAW:
+                status = "Draw! 🤝";
+                boardEnabled = false;
+                restartButton.setEnabled(true);
+                sound = drawSound;
+                break;
+            case Message.RESET:
+                resetBoard();
+                break;
+            case Message.STATS:
+                updateStats(message);
+                break;
+            case Message.WRONG_MOVE:
+                sound = errorSound;
+                prompts.add(() -> JOptionPane.showMessageDialog(this, "Invalid move!",
+                        "Error", JOptionPane.WARNING_MESSAGE));
+                break;
+            case Message.RESTART_REQUEST:
+                String requester = message.getName();
+                prompts.add(() -> handleRestartRequest(requester));
+                break;
+            case Message.RESTART_CONFIRMED:
+                status = "Restarting...";
+                break;
+            case Message.RESTART_DECLINED:
+                String decliner = message.getName();
+                prompts.add(() -> JOptionPane.showMessageDialog(this, decliner + " declined restart.",
+                        "Declined", JOptionPane.INFORMATION_MESSAGE));
+                break;
+            case Message.QUIT:
+                String quitter = message.getName();
+                prompts.add(() -> {
+                    JOptionPane.showMessageDialog(this, quitter + " quit!",
+                            "Game Over", JOptionPane.INFORMATION_MESSAGE);
+                    System.exit(0);
+                });
+                break;
+            default:
+                break;
         }
     }
 
-    private void handleWin(String[] parts) {
-        char winner = parts[1].charAt(0);
-        enableBoard(false);
+    private void handleWin(Message message) {
+        char winner = message.getPlayer();
+        boardEnabled = false;
 
         if (winner == playerSymbol) {
-            statusLabel.setText("You WIN! 🎉");
-            playSound(winClip);
+            status = "You WIN! 🎉";
+            sound = winSound;
         } else {
-            statusLabel.setText("You LOSE! 😢");
-            playSound(loseClip);
+            status = "You LOSE! 😢";
+            sound = loseSound;
         }
 
-        for (int i = 3; i < parts.length; i += 2) {
-            int row = Integer.parseInt(parts[i]);
-            int col = Integer.parseInt(parts[i + 1]);
-            highlightWinningCell(buttons[row][col]);
+        if (message.getCellCount() == 0) {
+            status += (winner == playerSymbol) ? " Opponent ran out of time." : " Out of time.";
+        }
+        for (int i = 0; i < message.getCellCount(); i++) {
+            highlighted.add(buttons[message.getCellRow(i)][message.getCellCol(i)]);
         }
+        if (!highlighted.isEmpty()) animationClock.start();
 
         restartButton.setEnabled(true);
     }
 
-    private void highlightWinningCell(JButton button) {
-        Timer timer = new Timer(300, new ActionListener() {
-            boolean toggle = false;
-            public void actionPerformed(ActionEvent e) {
-                button.setBackground(toggle ? Color.YELLOW : BUTTON_COLOR);
-                toggle = !toggle;
-            }
-        });
-        timer.start();
-    }
-
-    private void enableBoard(boolean enable) {
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
-                buttons[i][j].setEnabled(enable);
-            }
-        }
+    private void animate() {
+        blinkOn = !blinkOn;
+        for (JButton button : highlighted) button.setBackground(blinkOn ? Color.YELLOW : BUTTON_COLOR);
     }
 
     private void resetBoard() {
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
-                buttons[i][j].setText("");
-                buttons[i][j].setBackground(BUTTON_COLOR);
-                buttons[i][j].setEnabled(true);
-            }
-        }
-        statusLabel.setText("New game!");
+        animationClock.stop();
+        for (JButton button : highlighted) button.setBackground(BUTTON_COLOR);
+        highlighted.clear();
+        blinkOn = false;
+
+        Arrays.fill(board, '\0');
+        boardEnabled = true;
+        status = "New game!";
         restartButton.setEnabled(false);
     }
 
-    private void updateStats(String message) {
-        String[] parts = message.split(" ");
-        int xWins = Integer.parseInt(parts[1]);
-        int oWins = Integer.parseInt(parts[2]);
-        draws = Integer.parseInt(parts[3]);
+    private void updateStats(Message message) {
+        int xWins = message.getXWins();
+        int oWins = message.getOWins();
+        draws = message.getDraws();
 
         if (playerSymbol == 'X') {
             myWins = xWins;
@@ -311,7 +405,7 @@ public class Client extends JFrame {
     }
 
     private void requestRestart() {
-        out.println("RESTART_REQUEST");
+        send(connection::sendRestartRequest);
     }
 
     private void handleRestartRequest(String requester) {
@@ -319,44 +413,27 @@ public class Client extends JFrame {
             int choice = JOptionPane.showConfirmDialog(this,
                     requester + " wants to restart. Agree?",
                     "Restart?", JOptionPane.YES_NO_OPTION);
-            out.println("RESTART_CONFIRM " + (choice == JOptionPane.YES_OPTION));
+            boolean confirm = choice == JOptionPane.YES_OPTION;
+            send(() -> connection.sendRestartConfirm(confirm));
         }
     }
 
     private void quit() {
-        out.println("QUIT");
+        send(connection::sendQuit);
         System.exit(0);
     }
 
     private void loadSounds() {
-        backgroundClip = loadSound("/com/resources/sounds/background.wav");
-        moveClip = loadSound("/com/resources/sounds/move.wav");
-        errorClip = loadSound("/com/resources/sounds/error.wav");
-        winClip = loadSound("/com/resources/sounds/win.wav");
-        loseClip = loadSound("/com/resources/sounds/lose.wav");
-        drawClip = loadSound("/com/resources/sounds/draw.wav");
+        backgroundSound = sounds.sound("/com/resources/sounds/background.wav");
+        moveSound = sounds.sound("/com/resources/sounds/move.wav");
+        errorSound = sounds.sound("/com/resources/sounds/error.wav");
+        winSound = sounds.sound("/com/resources/sounds/win.wav");
+        loseSound = sounds.sound("/com/resources/sounds/lose.wav");
+        drawSound = sounds.sound("/com/resources/sounds/draw.wav");
     }
 
-    private Clip loadSound(String path) {
-        try {
-            InputStream audioSrc = getClass().getResourceAsStream(path);
-            if (audioSrc == null) return null;
-            InputStream bufferedIn = new BufferedInputStream(audioSrc);
-            AudioInputStream audioStream = AudioSystem.getAudioInputStream(bufferedIn);
-            Clip clip = AudioSystem.getClip();
-            clip.open(audioStream);
-            return clip;
-        } catch (Exception e) {
-            System.err.println("Cannot load sound: " + path);
-            return null;
-        }
-    }
-
-    private void playSound(Clip clip) {
-        if (clip != null) {
-            clip.setFramePosition(0);
-            clip.start();
-        }
+    private void playSound(SoundEngine.Sound sound) {
+        sounds.play(sound);
     }
 
     public static void main(String[] args) {
@@ -364,6 +441,6 @@ public class Client extends JFrame {
         if (serverAddress == null || serverAddress.trim().isEmpty()) {
             serverAddress = "localhost";
         }
-        new Client(serverAddress);
+        new Client(serverAddress, Arrays.asList(args).contains("--binary"));
     }
 }
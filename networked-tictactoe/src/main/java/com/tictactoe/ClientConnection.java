@@ -0,0 +1,259 @@
+package com.tictactoe;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+
+/** The client side of the protocol, shared by the Swing client and the headless load tester. */
+public class ClientConnection implements Closeable {
+    public interface Listener {
+        /** Receives every message of one server event together. */
+        void onBatch(List<Message> batch);
+
+        void onDisconnect(IOException e);
+    }
+
+    private final String host;
+    private final int port;
+    private volatile Socket socket;
+    private OutputStream out;
+    private InputStream in;
+    private final ByteBuffer sendBuffer = ByteBuffer.allocate(Protocol.MAX_FRAME_LENGTH);
+    private final Message outgoing = new Message();
+    private final ReentrantLock sendLock = new ReentrantLock();
+    private Codec codec = TextCodec.INSTANCE;
+    private int playerId;
+    private int boardSize = 3;
+    private int winLength = 3;
+    private long sessionToken;
+    private int lastSequence;
+
+    public ClientConnection(String host, int port) throws IOException {
+        this.host = host;
+        this.port = port;
+        connect();
+
+        String message = Protocol.readLine(in);
+        if (message == null || !message.startsWith("ASSIGN")) {
+            throw new IOException("Expected ASSIGN but got: " + message);
+        }
+        String[] parts = message.split(" ");
+        playerId = Integer.parseInt(parts[1]);
+        if (parts.length > 2) boardSize = Integer.parseInt(parts[2]);
+        if (parts.length > 3) winLength = Integer.parseInt(parts[3]);
+    }
+
+    private void connect() throws IOException {
+        Socket connected = new Socket(host, port);
+        connected.setTcpNoDelay(true);
+        sendLock.lock();
+        try {
+            socket = connected;
+            out = new BufferedOutputStream(connected.getOutputStream());
+            in = new BufferedInputStream(connected.getInputStream());
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    public int getPlayerId() {
+        return playerId;
+    }
+
+    public char getSymbol() {
+        return (playerId == 1) ? 'X' : 'O';
+    }
+
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    public void handshake(String playerName, boolean binary) throws IOException {
+        if (binary) {
+            out.write((Protocol.BINARY_HANDSHAKE + "\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            if (!Protocol.BINARY_HANDSHAKE.equals(Protocol.readLine(in))) {
+                throw new IOException("Server refused binary protocol");
+            }
+            codec = BinaryCodec.INSTANCE;
+        }
+        send(outgoing.set(Message.NAME).name(playerName.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public void send(Message message) throws IOException {
+        sendLock.lock();
+        try {
+            sendBuffer.clear();
+            codec.encode(message, sendBuffer);
+            out.write(sendBuffer.array(), 0, sendBuffer.position());
+            out.flush();
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    public void sendMove(int row, int col) throws IOException {
+        sendLock.lock();
+        try {
+            send(outgoing.set(Message.MOVE).move(row, col, getSymbol()));
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    public void sendRestartRequest() throws IOException {
+        sendLock.lock();
+        try {
+            send(outgoing.set(Message.RESTART_REQUEST));
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    public void sendRestartConfirm(boolean confirm) throws IOException {
+        sendLock.lock();
+        try {
+            send(outgoing.set(Message.RESTART_CONFIRM).confirm(confirm));
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    private void sendPong() throws IOException {
+        sendLock.lock();
+        try {
+            send(outgoing.set(Message.PONG));
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    public void sendQuit() throws IOException {
+        sendLock.lock();
+        try {
+            send(outgoing.set(Message.QUIT));
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * After {@link #listen} has returned with the connection lost, connects again and resumes the session, retrying
+     * with backoff for up to {@code timeoutMillis}. The next {@link #listen} then receives only the events that were
+     * missed. False if the server no longer holds the seat or could not be reached in time.
+     */
+    public boolean reconnect(long timeoutMillis) {
+        if (sessionToken == 0) return false;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (long backoff = 100; ; backoff = Math.min(backoff * 2, 2000)) {
+            try {
+                return resume();
+            } catch (IOException e) {
+                if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff) > deadline) return false;
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+    }
+
+    private boolean resume() throws IOException {
+        socket.close();
+        connect();
+        out.write((Protocol.RESUME + " " + Long.toHexString(sessionToken) + " " + lastSequence + "\n")
+            .getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        // a server that seats newcomers at once has already sent an ASSIGN for a fresh game; skip it
+        String line;
+        while ((line = Protocol.readLine(in)) != null && !line.startsWith(Protocol.RESUMED)) {
+        }
+        return line != null;
+    }
+
+    /** Reads until the connection drops, handing each batch to the listener on the calling thread. */
+    public void listen(Listener listener) {
+        try {
+            if (codec == BinaryCodec.INSTANCE) {
+                DataInputStream data = new DataInputStream(in);
+                while (true) {
+                    int length = data.readUnsignedShort();
+                    byte[] frame = new byte[length];
+                    data.readFully(frame);
+                    List<Message> batch = new ArrayList<>();
+                    decodeFrame(ByteBuffer.wrap(frame), batch);
+                    batch.removeIf(this::track);
+                    if (!batch.isEmpty()) listener.onBatch(batch);
+                }
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String message;
+            while ((message = reader.readLine()) != null) {
+                List<Message> batch = new ArrayList<>();
+                do {
+                    Message msg = new Message();
+                    TextCodec.decode(message, msg);
+                    if (!track(msg)) batch.add(msg);
+                } while (reader.ready() && (message = reader.readLine()) != null);
+                if (!batch.isEmpty()) listener.onBatch(batch);
+            }
+            listener.onDisconnect(new EOFException("Server closed the connection"));
+        } catch (IOException e) {
+            listener.onDisconnect(e);
+        }
+    }
+
+    /** Answers heartbeats and keeps what a resume needs; these messages are not passed on to the listener. */
+    private boolean track(Message message) {
+        if (message.getType() == Message.PING) {
+            try {
+                sendPong();
+            } catch (IOException e) {
+                // the read loop finds out about a broken connection
+            }
+            return true;
+        }
+        if (message.getType() == Message.SESSION) {
+            sessionToken = message.getToken();
+            return true;
+        }
+        if (message.getType() == Message.SEQ) {
+            lastSequence = message.getSequence();
+            return true;
+        }
+        return false;
+    }
+
+    static void decodeFrame(ByteBuffer frame, List<Message> batch) {
+        if (frame.get(frame.position()) != Message.BATCH) {
+            Message msg = new Message();
+            BinaryCodec.decode(frame, msg);
+            batch.add(msg);
+            return;
+        }
+        frame.get();
+        while (frame.hasRemaining()) {
+            int length = frame.getShort() & 0xFFFF;
+            int end = frame.position() + length;
+            ByteBuffer inner = frame.duplicate();
+            inner.limit(end);
+            decodeFrame(inner, batch);
+            frame.position(end);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
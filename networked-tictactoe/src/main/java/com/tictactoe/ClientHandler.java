@@ -0,0 +1,213 @@
+package com.tictactoe;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.util.concurrent.*;
+
+class ClientHandler extends PlayerSession implements Runnable {
+    private static final long RESUME_POLL_MILLIS = 50;
+
+    private Socket socket;
+    private OutputStream out;
+    private BufferedInputStream in;
+    private final ThreadFactory threads;
+    private final Lobby lobby;
+    private final CountDownLatch seated = new CountDownLatch(1);
+
+    public ClientHandler(Socket socket, OutboundQueue outbound, TokenBucket limiter, ThreadFactory threads,
+                         Lobby lobby) {
+        super(outbound, limiter);
+        this.socket = socket;
+        this.threads = threads;
+        this.lobby = lobby;
+        try {
+            out = new BufferedOutputStream(socket.getOutputStream());
+            in = new BufferedInputStream(socket.getInputStream());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void run() {
+        threads.newThread(this::writeLoop).start();
+        try {
+            String firstLine = awaitFirstLine();
+            if (isResumeLine(firstLine)) {
+                if (!resume(firstLine, lobby)) {
+                    Log.info(Log.CONNECTION, 0, 0, "resume refused");
+                    return;
+                }
+            } else if (Protocol.BINARY_HANDSHAKE.equals(firstLine)) {
+                writeLine(Protocol.BINARY_HANDSHAKE);
+                codec = BinaryCodec.INSTANCE;
+                room.join(this);
+            } else {
+                room.join(this);
+                onName(firstLine);
+            }
+            if (isBinary()) readFrames();
+            else readLines();
+        } catch (IOException e) {
+            Log.info(Log.CONNECTION, roomId(), playerId, "disconnected");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            Metrics.INSTANCE.disconnected();
+            stopHeartbeat();
+            if (room != null) room.leave(this);
+            outbound.close();
+            try {
+                if (socket != null) socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Waits to be seated and sends ASSIGN, then reads the client's first line. A reconnecting client sends RESUME
+     * without waiting, so input is checked for while the player is still in the lobby, and once more before ASSIGN.
+     */
+    private String awaitFirstLine() throws IOException, InterruptedException {
+        while (seated.getCount() > 0) {
+            if (!inputArrived()) continue;
+            String line = Protocol.readLine(in);
+            if (isResumeLine(line) && claim()) return line;
+            seated.await();
+            return greet(line);
+        }
+        return greet((in.available() > 0) ? Protocol.readLine(in) : null);
+    }
+
+    /**
+     * Waits up to the poll interval for input from a player in the lobby. One who hangs up there is taken out of
+     * the lobby, or out of the room if the lobby seated them first, so no one is paired with a dead connection.
+     */
+    private boolean inputArrived() throws IOException, InterruptedException {
+        if (in.available() > 0) return true;
+        socket.setSoTimeout((int) RESUME_POLL_MILLIS);
+        try {
+            in.mark(1);
+            if (in.read() < 0) {
+                if (!claim()) seated.await();
+                throw new EOFException("Closed in the lobby");
+            }
+            in.reset();
+            return true;
+        } catch (SocketTimeoutException e) {
+            return false;
+        } finally {
+            socket.setSoTimeout(0);
+        }
+    }
+
+    /** Sends ASSIGN unless {@code early}, a line read before it, is a RESUME; returns the client's first line. */
+    private String greet(String early) throws IOException {
+        if (isResumeLine(early)) return early;
+        writeLine(assignMessage());
+        return (early != null) ? early : Protocol.readLine(in);
+    }
+
+    private void readLines() throws IOException, InterruptedException {
+        while (true) {
+            outbound.awaitReadable();
+            // bounded like a frame, so one endless line cannot fill the heap
+            String inputLine = Protocol.readLine(in);
+            readNanos = System.nanoTime();
+            if (inputLine == null) break;
+            if (admit() && !handleLine(inputLine)) break;
+        }
+    }
+
+    private void readFrames() throws IOException, InterruptedException {
+        DataInputStream data = new DataInputStream(in);
+        ByteBuffer frame = ByteBuffer.allocate(Protocol.MAX_FRAME_LENGTH);
+        while (true) {
+            outbound.awaitReadable();
+            int length = data.readUnsignedShort();
+            if (length == 0 || length > frame.capacity()) throw new IOException("Bad frame length " + length);
+            data.readFully(frame.array(), 0, length);
+            readNanos = System.nanoTime();
+            frame.clear().limit(length);
+            if (admit() && !handleFrame(frame)) break;
+        }
+    }
+
+    /**
+     * Applies the rate limit to the message just read: true to handle it, false to drop it. Throttling blocks this
+     * reader until a token is available, which leaves the socket unread and slows the sender down.
+     */
+    private boolean admit() throws IOException, InterruptedException {
+        TokenBucket.Penalty penalty = overLimit();
+        if (penalty == null) return true;
+        switch (penalty) {
+            case THROTTLE:
+                limiter.awaitAvailable();
+                limiter.tryTake(System.nanoTime());
+                return true;
+            case DROP:
+                return false;
+            default:
+                throw new IOException("Over the message rate limit");
+        }
+    }
+
+    private void writeLoop() {
+        byte[] chunk = new byte[Protocol.MAX_FRAME_LENGTH];
+        try {
+            ByteBuffer buffer;
+            while ((buffer = outbound.awaitHead()) != null) {
+                do {
+                    writeFully(buffer, chunk);
+                    outbound.remove();
+                } while ((buffer = outbound.peek()) != null);
+                out.flush();
+                resyncIfNeeded();
+            }
+        } catch (IOException e) {
+            closeAsync();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Writes all of {@code buffer}, which may be a read-only view shared with other connections. */
+    private void writeFully(ByteBuffer buffer, byte[] chunk) throws IOException {
+        if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            return;
+        }
+        while (buffer.hasRemaining()) {
+            int length = Math.min(chunk.length, buffer.remaining());
+            buffer.get(chunk, 0, length);
+            out.write(chunk, 0, length);
+        }
+    }
+
+    @Override
+    protected void start() {
+        seated.countDown();
+    }
+
+    @Override
+    protected boolean isOpen() {
+        return !socket.isClosed();
+    }
+
+    @Override
+    protected void wakeWriter() {
+        // the writer thread is parked on the queue and wakes up by itself
+    }
+
+    @Override
+    protected void closeAsync() {
+        outbound.close();
+        try {
+            socket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
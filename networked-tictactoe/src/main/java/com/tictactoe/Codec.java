@@ -0,0 +1,8 @@
+package com.tictactoe;
+
+import java.nio.*;
+
+public interface Codec {
+    /** Appends the wire form of {@code message} to {@code out}. */
+    void encode(Message message, ByteBuffer out);
+}
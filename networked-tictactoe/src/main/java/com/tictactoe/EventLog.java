@@ -0,0 +1,64 @@
+package com.tictactoe;
+
+import java.nio.*;
+
+/**
+ * The most recent event batches of one room in one codec, exactly as they were sent, so a player who reconnects
+ * can be sent what they missed and nothing else. Batches are copied into a fixed ring of bytes and the oldest are
+ * forgotten as new ones arrive; a player who fell further behind than the ring reaches gets a snapshot instead.
+ */
+final class EventLog {
+    private final byte[] ring;
+    private final int[] sequences;
+    private final long[] starts;
+    private long end = 0;
+    private int newest = -1;
+    private int count = 0;
+
+    EventLog(int capacity) {
+        this.ring = new byte[capacity];
+        this.sequences = new int[Math.max(16, capacity / 16)];
+        this.starts = new long[sequences.length];
+    }
+
+    /** Keeps the batch between position and limit, without moving either. */
+    void append(int sequence, ByteBuffer batch) {
+        int length = batch.remaining();
+        if (length > ring.length) {
+            count = 0;
+            end += length;
+            return;
+        }
+        newest = (newest + 1) % sequences.length;
+        sequences[newest] = sequence;
+        starts[newest] = end;
+        count = Math.min(count + 1, sequences.length);
+
+        int offset = (int) (end % ring.length);
+        int first = Math.min(length, ring.length - offset);
+        batch.get(batch.position(), ring, offset, first);
+        batch.get(batch.position() + first, ring, 0, length - first);
+        end += length;
+    }
+
+    /** Every batch after {@code sequence}, or null if some of them have already been forgotten. */
+    ByteBuffer since(int sequence) {
+        int index = newest;
+        int expected = (count == 0) ? -1 : sequences[newest];
+        for (int i = 0; i < count && sequences[index] == expected; i++, expected--) {
+            if (expected == sequence + 1) {
+                return (starts[index] < end - ring.length) ? null : copy(starts[index]);
+            }
+            index = (index == 0) ? sequences.length - 1 : index - 1;
+        }
+        return null;
+    }
+
+    private ByteBuffer copy(long start) {
+        ByteBuffer missed = ByteBuffer.allocate((int) (end - start));
+        int offset = (int) (start % ring.length);
+        int first = Math.min(missed.capacity(), ring.length - offset);
+        missed.put(ring, offset, first).put(ring, 0, missed.capacity() - first);
+        return missed.flip();
+    }
+}
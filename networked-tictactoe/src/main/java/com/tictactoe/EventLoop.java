@@ -0,0 +1,87 @@
+package com.tictactoe;
+
+import java.io.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+class EventLoop implements Runnable {
+    interface Handler {
+        void handle(SelectionKey key) throws IOException;
+
+        default void exceptionCaught(Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+
+    EventLoop(String name) throws IOException {
+        this(name, Thread.NORM_PRIORITY);
+    }
+
+    EventLoop(String name, int priority) throws IOException {
+        selector = Selector.open();
+        thread = new Thread(this, name);
+        thread.setPriority(priority);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    void execute(Runnable task) {
+        tasks.add(task);
+        if (!inEventLoop() && wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    SelectionKey register(SelectableChannel channel, int ops, Handler handler) throws ClosedChannelException {
+        return channel.register(selector, ops, handler);
+    }
+
+    @Override
+    public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                selector.select();
+                wakeupPending.set(false);
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    Handler handler = (Handler) key.attachment();
+                    try {
+                        if (key.isValid()) handler.handle(key);
+                    } catch (Exception e) {
+                        handler.exceptionCaught(e);
+                    }
+                }
+                runTasks();
+            } catch (IOException e) {
+                Log.error(Log.SERVER, 0, 0, "event loop error: " + e.getMessage());
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.tictactoe;
+
+public interface GameEngine {
+    int IN_PROGRESS = 0;
+    int WIN = 1;
+    int DRAW = 2;
+
+    int size();
+
+    int winLength();
+
+    boolean isLegal(int row, int col);
+
+    /** Places the piece and reports IN_PROGRESS, WIN or DRAW, judged from the last move only. */
+    int play(int row, int col, char player);
+
+    char cellAt(int row, int col);
+
+    int moveCount();
+
+    /** Writes the winning line as row * size + col indices into {@code out} and returns how many were written. */
+    int winningCells(int[] out);
+
+    void reset();
+
+    static void validate(int size, int winLength) {
+        if (size < 1 || size > 16 || winLength < 1 || winLength > size) {
+            throw new IllegalArgumentException("Invalid board " + size + "x" + size + " with " + winLength + " in a row");
+        }
+    }
+
+    static GameEngine create(int size, int winLength) {
+        validate(size, winLength);
+        if (size * size <= Long.SIZE) return new BitboardEngine(size, winLength);
+        return new LargeBitboardEngine(size, winLength);
+    }
+}
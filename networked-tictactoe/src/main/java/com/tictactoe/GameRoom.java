@@ -0,0 +1,693 @@
+package com.tictactoe;
+
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+import java.util.function.*;
+
+public class GameRoom {
+    public static final int MAX_PLAYERS = 2;
+    private static final int ALL_SEATS = ((1 << MAX_PLAYERS) - 1) << 1;
+    private static final int MAX_MESSAGE_LENGTH = Protocol.MAX_FRAME_LENGTH / 2;
+    private static final int BATCH_HEADER_LENGTH = 3;
+    private static final int FORFEITED = 1;
+    private static final int RESTART_REQUESTED = 2;
+
+    private final int id;
+    private final RoomManager owner;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final List<PlayerSession> players = new ArrayList<>(MAX_PLAYERS);
+    /** Players whose connection dropped, holding their seat until they resume or the grace period runs out. */
+    private final List<PlayerSession> suspended = new ArrayList<>(MAX_PLAYERS);
+    /** One bit per seat number handed out by {@link #reserveSeat}. */
+    private int takenSeats = 0;
+    /** Players the lobby seated here, joined or not, so a room that falls through before it starts can reopen. */
+    private final List<PlayerSession> seated = new ArrayList<>(MAX_PLAYERS);
+    private final GameEngine engine;
+    private final int[] winCells;
+    private char currentPlayer = 'X';
+    private int gameResult = GameEngine.IN_PROGRESS;
+    /** Who may move, or 0 once the game is over: written under the lock, read without it by {@link #mayMove}. */
+    private volatile char turn = 'X';
+    private char lastMover;
+    private final Message outgoing = new Message();
+    private final Replay replay = new Replay();
+    private boolean recording = false;
+    private final ByteBuffer textBatch = ByteBuffer.allocate(Protocol.MAX_FRAME_LENGTH);
+    private final ByteBuffer binaryBatch = ByteBuffer.allocate(Protocol.MAX_FRAME_LENGTH);
+    private int binaryBatchCount = 0;
+    private final boolean sequenced;
+    private int sequence = 0;
+    private EventLog textLog;
+    private EventLog binaryLog;
+    private byte[] playerXName = new byte[0];
+    private byte[] playerOName = new byte[0];
+    private int playerXWins = 0;
+    private int playerOWins = 0;
+    private int draws = 0;
+    private boolean started = false;
+    private boolean removed = false;
+    private SpectatorGroup spectators;
+    private boolean forfeited = false;
+    private TimerWheel.Timeout turnClock;
+    private int turns = 0;
+    private boolean restartRequested = false;
+    private String restartRequester = null;
+    /** Bumped whenever something a checkpoint records changes; read without the lock by {@link Checkpoint}. */
+    private volatile int changes = 0;
+
+    public GameRoom(int id, GameEngine engine, RoomManager owner) {
+        this.id = id;
+        this.owner = owner;
+        this.engine = engine;
+        this.winCells = new int[engine.winLength()];
+        this.sequenced = owner != null && owner.isResumeEnabled();
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getBoardSize() {
+        return engine.size();
+    }
+
+    public int getWinLength() {
+        return engine.winLength();
+    }
+
+    int reserveSeat() {
+        return reserveSeat(null);
+    }
+
+    /** The lowest free seat number, held for {@code player} until they leave; -1 if there is none. */
+    int reserveSeat(PlayerSession player) {
+        lock.lock();
+        try {
+            for (int seat = 1; seat <= MAX_PLAYERS && !removed; seat++) {
+                if ((takenSeats & 1 << seat) != 0) continue;
+                takenSeats |= 1 << seat;
+                if (player != null) seated.add(player);
+                return seat;
+            }
+            return -1;
+        } finally {
+            unlock();
+        }
+    }
+
+    boolean hasFreeSeat() {
+        lock.lock();
+        try {
+            return !removed && takenSeats != ALL_SEATS;
+        } finally {
+            unlock();
+        }
+    }
+
+    boolean isStarted() {
+        lock.lock();
+        try {
+            return started;
+        } finally {
+            unlock();
+        }
+    }
+
+    /** Starts sending this room's events to {@code spectator}, beginning with the current state. */
+    boolean addSpectator(Spectator spectator, Supplier<SpectatorGroup> newGroup) {
+        lock.lock();
+        try {
+            if (removed) return false;
+            if (spectators == null) spectators = newGroup.get();
+            spectators.snapshot(spectator, snapshot(TextCodec.INSTANCE, false));
+            return true;
+        } finally {
+            unlock();
+        }
+    }
+
+    public void join(PlayerSession player) {
+        lock.lock();
+        try {
+            players.add(player);
+            changes++;
+            if (sequenced && player.isRemote()) {
+                player.sessionToken = owner.openSession(player);
+                player.send(outgoing.set(Message.SESSION).token(player.sessionToken));
+            }
+            if (players.size() == MAX_PLAYERS) {
+                Log.info(Log.ROOM, id, 0, "both players connected, game starting");
+                started = true;
+                Metrics.INSTANCE.gameStarted();
+                beginReplay();
+                broadcast(outgoing.set(Message.START));
+                startTurnClock();
+            }
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Whether {@code player} could play at (row, col) as far as can be told without the lock: it is their turn and
+     * the cell is on the board. The turn is published before the TURN announcing it is sent, so a player who has
+     * seen their TURN always passes; a true answer is checked again under the lock by {@link #makeMove}.
+     */
+    boolean mayMove(char player, int row, int col) {
+        int size = engine.size();
+        return turn == player && row >= 0 && row < size && col >= 0 && col < size;
+    }
+
+    private void publishTurn() {
+        turn = (gameResult == GameEngine.IN_PROGRESS) ? currentPlayer : 0;
+    }
+
+    public boolean makeMove(int row, int col, char player, PlayerSession client) {
+        lock.lock();
+        try {
+            if (player == currentPlayer && gameResult == GameEngine.IN_PROGRESS && engine.isLegal(row, col)) {
+                int result = engine.play(row, col, player);
+                gameResult = result;
+                lastMover = player;
+                if (recording) replay.addMove(row * engine.size() + col, System.currentTimeMillis());
+                currentPlayer = (currentPlayer == 'X') ? 'O' : 'X';
+                publishTurn();
+                broadcast(outgoing.set(Message.MOVE).move(row, col, player));
+                broadcast(outgoing.set(Message.TURN).player(currentPlayer));
+                checkGameStatus(result, player);
+                if (result == GameEngine.IN_PROGRESS) startTurnClock();
+                return true;
+            } else {
+                Metrics.INSTANCE.wrongMove();
+                client.send(outgoing.set(Message.WRONG_MOVE));
+                return false;
+            }
+        } finally {
+            unlock();
+        }
+    }
+
+    private void checkGameStatus(int result, char player) {
+        if (result == GameEngine.WIN) {
+            won(player, engine.winningCells(winCells));
+        } else if (result == GameEngine.DRAW) {
+            stopTurnClock();
+            Metrics.INSTANCE.gameCompleted();
+            draws++;
+            if (owner != null) owner.recordResult(playerXName, playerOName, StatsStore.DRAW);
+            finishReplay(Replay.DRAW);
+            broadcast(outgoing.set(Message.DRAW));
+            broadcast(outgoing.set(Message.STATS).stats(playerXWins, playerOWins, draws));
+        }
+    }
+
+    /** Ends the game as won by {@code player}, along the first {@code count} of {@link #winCells}. */
+    private void won(char player, int count) {
+        stopTurnClock();
+        Metrics.INSTANCE.gameCompleted();
+        if (player == 'X') playerXWins++;
+        else playerOWins++;
+        byte outcome = (player == 'X') ? StatsStore.X_WINS : StatsStore.O_WINS;
+        if (owner != null) owner.recordResult(playerXName, playerOName, outcome);
+        finishReplay(outcome);
+        broadcast(outgoing.set(Message.WIN).player(player)
+            .name(player == 'X' ? playerXName : playerOName)
+            .cells(winCells, count, engine.size()));
+        broadcast(outgoing.set(Message.STATS).stats(playerXWins, playerOWins, draws));
+    }
+
+    /**
+     * Gives the player to move {@link RoomManager#getTurnMillis} to do so. Each turn gets a fresh timeout and the
+     * last one is cancelled, both O(1) on the timer wheel.
+     */
+    private void startTurnClock() {
+        if (owner == null || owner.getTurnMillis() <= 0) return;
+        stopTurnClock();
+        int turn = ++turns;
+        turnClock = owner.getTimers().schedule(() -> turnExpired(turn), owner.getTurnMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void stopTurnClock() {
+        if (turnClock != null) turnClock.cancel();
+        turnClock = null;
+    }
+
+    /** The player to move ran out of time: they forfeit, and the game ends as a win for their opponent. */
+    private void turnExpired(int turn) {
+        lock.lock();
+        try {
+            if (turn != turns || turnClock == null || gameResult != GameEngine.IN_PROGRESS) return;
+            char winner = (currentPlayer == 'X') ? 'O' : 'X';
+            Log.info(Log.ROOM, id, 0, currentPlayer + " ran out of time");
+            Metrics.INSTANCE.turnTimedOut();
+            turnClock = null;
+            gameResult = GameEngine.WIN;
+            publishTurn();
+            lastMover = winner;
+            forfeited = true;
+            won(winner, 0);
+        } finally {
+            unlock();
+        }
+    }
+
+    public void resetGame() {
+        lock.lock();
+        try {
+            finishReplay(Replay.ABANDONED);
+            engine.reset();
+            beginReplay();
+            currentPlayer = 'X';
+            gameResult = GameEngine.IN_PROGRESS;
+            publishTurn();
+            forfeited = false;
+            broadcast(outgoing.set(Message.RESET));
+            startTurnClock();
+            restartRequested = false;
+            restartRequester = null;
+        } finally {
+            unlock();
+        }
+    }
+
+    public void requestRestart(PlayerSession player) {
+        lock.lock();
+        try {
+            if (!restartRequested) {
+                restartRequested = true;
+                restartRequester = player.getPlayerName();
+                broadcast(outgoing.set(Message.RESTART_REQUEST).name(player.getNameBytes()));
+            }
+        } finally {
+            unlock();
+        }
+    }
+
+    public void confirmRestart(boolean confirm, PlayerSession player) {
+        lock.lock();
+        try {
+            if (restartRequested && !player.getPlayerName().equals(restartRequester)) {
+                if (confirm) {
+                    broadcast(outgoing.set(Message.RESTART_CONFIRMED));
+                    resetGame();
+                } else {
+                    broadcast(outgoing.set(Message.RESTART_DECLINED).name(player.getNameBytes()));
+                    restartRequested = false;
+                    restartRequester = null;
+                }
+            }
+        } finally {
+            unlock();
+        }
+    }
+
+    public void setPlayerName(char player, byte[] name) {
+        lock.lock();
+        try {
+            if (player == 'X') playerXName = name;
+            else if (player == 'O') playerOName = name;
+            changes++;
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Called when a player's connection is gone. A player who can resume keeps their seat, and the game goes on
+     * being recorded for them, until they come back or {@link #expire} gives the seat up.
+     */
+    public void leave(PlayerSession player) {
+        lock.lock();
+        try {
+            if (player.superseded) return;
+            boolean joined = players.remove(player);
+            if (joined && started && player.sessionToken != 0 && !player.quitting && !removed) {
+                suspended.add(player);
+                Metrics.INSTANCE.sessionSuspended();
+                Log.info(Log.ROOM, id, player.playerId, "connection lost, holding the seat for a resume");
+                owner.suspend(player);
+                return;
+            }
+            depart(player);
+        } finally {
+            unlock();
+        }
+    }
+
+    /** Gives up the seat of a suspended player who did not resume in time. */
+    void expire(PlayerSession player) {
+        lock.lock();
+        try {
+            if (!suspended.remove(player)) return;
+            Metrics.INSTANCE.sessionReleased();
+            Log.info(Log.ROOM, id, player.playerId, "resume window expired");
+            depart(player);
+        } finally {
+            unlock();
+        }
+    }
+
+    private void depart(PlayerSession player) {
+        changes++;
+        finishReplay(Replay.ABANDONED);
+        if (player.sessionToken != 0) owner.closeSession(player);
+        if (!started) {
+            vacate(player);
+            return;
+        }
+        for (PlayerSession other : players) other.opponentLeft();
+        if (players.isEmpty() && suspended.isEmpty()) close();
+    }
+
+    /**
+     * Gives back the seat of a player who left before the game started: one who dropped between pairing and
+     * joining, or who turned out to be resuming another game. Whoever holds the other seat goes back to the lobby,
+     * keeping it, to wait for a new opponent; with no one left to wait, the room closes.
+     */
+    private void vacate(PlayerSession player) {
+        if (seated.remove(player)) takenSeats &= ~(1 << player.playerId);
+        if (seated.isEmpty()) {
+            for (PlayerSession other : players) other.opponentLeft();
+            close();
+        } else {
+            for (PlayerSession other : seated) owner.requeue(other);
+        }
+    }
+
+    private void close() {
+        if (removed) return;
+        stopTurnClock();
+        if (started) Metrics.INSTANCE.gameEnded();
+        started = false;
+        removed = true;
+        if (spectators != null) spectators.close();
+        if (owner != null) owner.removeRoom(this);
+    }
+
+    /**
+     * Moves the seat of {@code old} to the reconnected {@code fresh} and sends it what it missed since
+     * {@code lastSequence}: the logged events if they are all still there, the current state otherwise. If the old
+     * connection has not been noticed as dropped yet, it is closed and its seat taken over all the same.
+     */
+    boolean resume(PlayerSession old, PlayerSession fresh, int lastSequence) {
+        lock.lock();
+        try {
+            if (removed) return false;
+            if (suspended.remove(old)) {
+                Metrics.INSTANCE.sessionReleased();
+            } else if (players.remove(old)) {
+                old.superseded = true;
+                old.closeAsync();
+            } else {
+                return false;
+            }
+            fresh.takeOver(old);
+            players.add(fresh);
+            owner.watch(fresh);
+            owner.moveSession(old, fresh);
+            fresh.writeLine(fresh.resumedMessage());
+
+            ByteBuffer missed = null;
+            if (lastSequence == sequence) {
+                missed = ByteBuffer.allocate(0);
+            } else if (lastSequence < sequence) {
+                EventLog log = fresh.isBinary() ? binaryLog : textLog;
+                if (log != null) missed = log.since(lastSequence);
+            }
+            Metrics.INSTANCE.resumed(missed != null);
+            Log.info(Log.ROOM, id, fresh.playerId, "resumed after event " + lastSequence + " of " + sequence +
+                ((missed != null) ? ", sending the missed events" : ", sending a snapshot"));
+            ByteBuffer update = (missed != null) ? missed : snapshot(fresh.codec, true);
+            if (update.hasRemaining()) fresh.write(update);
+            return true;
+        } finally {
+            unlock();
+        }
+    }
+
+    int getChanges() {
+        return changes;
+    }
+
+    /** The most bytes {@link #checkpoint} writes for a board of {@code size}. */
+    static int maxCheckpointLength(int size) {
+        return 3 * 4 + 4 + 3 * 4 + 3 * (2 + 4 * Protocol.MAX_NAME_LENGTH) + size * size + 1 + MAX_PLAYERS * 10;
+    }
+
+    /**
+     * Writes what a restarted server needs to carry on with this game: the board, the turn, the score and each
+     * seat's session token. False, writing nothing, if there is no game to carry on yet, or a seat, like the AI's,
+     * that no one can resume.
+     */
+    boolean checkpoint(ByteBuffer out) {
+        lock.lock();
+        try {
+            if (!started || removed) return false;
+            for (PlayerSession seat : players) {
+                if (seat.sessionToken == 0) return false;
+            }
+            out.putInt(id).putInt(sequence).putInt(turns);
+            out.put((byte) currentPlayer).put((byte) gameResult).put((byte) lastMover)
+                .put((byte) ((forfeited ? FORFEITED : 0) | (restartRequested ? RESTART_REQUESTED : 0)));
+            out.putInt(playerXWins).putInt(playerOWins).putInt(draws);
+            putName(out, playerXName);
+            putName(out, playerOName);
+            putName(out, (restartRequester != null) ? restartRequester.getBytes(StandardCharsets.UTF_8) : new byte[0]);
+            int size = engine.size();
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) out.put((byte) engine.cellAt(row, col));
+            }
+            out.put((byte) (players.size() + suspended.size()));
+            for (PlayerSession seat : players) putSeat(out, seat);
+            for (PlayerSession seat : suspended) putSeat(out, seat);
+            return true;
+        } finally {
+            unlock();
+        }
+    }
+
+    private static void putName(ByteBuffer out, byte[] name) {
+        out.putShort((short) name.length).put(name);
+    }
+
+    private static void putSeat(ByteBuffer out, PlayerSession seat) {
+        out.put((byte) seat.playerId).putLong(seat.sessionToken).put((byte) (seat.isBinary() ? 1 : 0));
+    }
+
+    /**
+     * Rebuilds the game from a {@link #checkpoint}, after its id, with every seat suspended as if its connection had
+     * just dropped. The game in progress is not recorded as a replay, since its first moves are not known.
+     */
+    void restore(ByteBuffer in) {
+        lock.lock();
+        try {
+            sequence = in.getInt();
+            turns = in.getInt();
+            currentPlayer = (char) in.get();
+            gameResult = in.get();
+            lastMover = (char) in.get();
+            int flags = in.get();
+            forfeited = (flags & FORFEITED) != 0;
+            restartRequested = (flags & RESTART_REQUESTED) != 0;
+            playerXWins = in.getInt();
+            playerOWins = in.getInt();
+            draws = in.getInt();
+            playerXName = getName(in);
+            playerOName = getName(in);
+            byte[] requester = getName(in);
+            restartRequester = restartRequested ? new String(requester, StandardCharsets.UTF_8) : null;
+            int size = engine.size();
+            for (int cell = 0; cell < size * size; cell++) {
+                byte piece = in.get();
+                if (piece != 0) engine.play(cell / size, cell % size, (char) piece);
+            }
+            for (int seats = in.get(); seats > 0; seats--) {
+                int playerId = in.get();
+                RestoredSeat seat = new RestoredSeat(this, playerId, in.getLong(), in.get() != 0,
+                    (playerId == 1) ? playerXName : playerOName);
+                suspended.add(seat);
+                owner.restoreSession(seat);
+                owner.suspend(seat);
+                Metrics.INSTANCE.sessionSuspended();
+            }
+            takenSeats = ALL_SEATS;
+            started = true;
+            Metrics.INSTANCE.gameStarted();
+            publishTurn();
+            if (gameResult == GameEngine.IN_PROGRESS) startTurnClock();
+        } finally {
+            unlock();
+        }
+    }
+
+    private static byte[] getName(ByteBuffer in) {
+        byte[] name = new byte[in.getShort()];
+        in.get(name);
+        return name;
+    }
+
+    /** The seat of a player who has not resumed since the server restarted; it only holds their token and name. */
+    private static final class RestoredSeat extends PlayerSession {
+        RestoredSeat(GameRoom room, int playerId, long token, boolean binary, byte[] name) {
+            super(room, playerId, new OutboundQueue(1024, OutboundQueue.Overflow.DISCONNECT));
+            this.sessionToken = token;
+            this.codec = binary ? BinaryCodec.INSTANCE : TextCodec.INSTANCE;
+            this.nameBytes = name;
+            this.playerName = new String(name, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        protected void wakeWriter() {
+        }
+
+        @Override
+        protected void closeAsync() {
+        }
+    }
+
+    private void beginReplay() {
+        recording = owner != null && owner.isRecordingReplays();
+        if (recording) replay.begin(System.currentTimeMillis(), engine.size(), engine.winLength());
+    }
+
+    /** Hands the game to the recorder unless it was already recorded or had no moves. */
+    private void finishReplay(byte outcome) {
+        if (!recording) return;
+        recording = false;
+        if (replay.getMoveCount() > 0) owner.recordReplay(replay.finish(outcome, playerXName, playerOName));
+    }
+
+    public void quit(PlayerSession player) {
+        lock.lock();
+        try {
+            broadcast(outgoing.set(Message.QUIT).name(player.getNameBytes()));
+        } finally {
+            unlock();
+        }
+    }
+
+    /** Replaces whatever a coalescing player missed with the current state of the room. */
+    void resync(PlayerSession player) {
+        lock.lock();
+        try {
+            if (!player.outbound.endDiscard()) return;
+            player.write(snapshot(player.codec, sequenced));
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * The room's current state as the messages that would bring a fresh client up to date, ending with the
+     * current sequence number if {@code sequence} is set. Caller holds the lock.
+     */
+    private ByteBuffer snapshot(Codec codec, boolean sequence) {
+        int size = engine.size();
+        ByteBuffer snapshot = ByteBuffer.allocate(size * size * 16 + Protocol.MAX_FRAME_LENGTH);
+        codec.encode(outgoing.set(Message.RESET), snapshot);
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                char cell = engine.cellAt(row, col);
+                if (cell != '\0') codec.encode(outgoing.set(Message.MOVE).move(row, col, cell), snapshot);
+            }
+        }
+        codec.encode(outgoing.set(Message.TURN).player(currentPlayer), snapshot);
+        if (gameResult == GameEngine.WIN) {
+            int count = forfeited ? 0 : engine.winningCells(winCells);
+            codec.encode(outgoing.set(Message.WIN).player(lastMover)
+                .name(lastMover == 'X' ? playerXName : playerOName)
+                .cells(winCells, count, size), snapshot);
+        } else if (gameResult == GameEngine.DRAW) {
+            codec.encode(outgoing.set(Message.DRAW), snapshot);
+        }
+        codec.encode(outgoing.set(Message.STATS).stats(playerXWins, playerOWins, draws), snapshot);
+        if (sequence) codec.encode(outgoing.set(Message.SEQ).sequence(this.sequence), snapshot);
+        snapshot.flip();
+        return snapshot;
+    }
+
+    private void unlock() {
+        try {
+            if (lock.getHoldCount() == 1) flushBatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void broadcast(Message message) {
+        Log.message(Log.BROADCAST, id, 0, message);
+        Metrics.INSTANCE.messageOut(message.type, players.size());
+        if (textBatch.remaining() < MAX_MESSAGE_LENGTH || binaryBatch.remaining() < MAX_MESSAGE_LENGTH) {
+            flushBatch();
+        }
+        boolean text = false;
+        boolean binary = false;
+        for (PlayerSession client : players) {
+            if (client.isBinary()) binary = true;
+            else text = true;
+        }
+        for (PlayerSession client : suspended) {
+            if (client.isBinary()) binary = true;
+            else text = true;
+        }
+        if (text || spectators != null) TextCodec.INSTANCE.encode(message, textBatch);
+        if (binary) {
+            if (binaryBatchCount == 0) binaryBatch.position(BATCH_HEADER_LENGTH);
+            BinaryCodec.INSTANCE.encode(message, binaryBatch);
+            binaryBatchCount++;
+        }
+    }
+
+    private void flushBatch() {
+        int eventsEnd = textBatch.position();
+        if (eventsEnd > 0 || binaryBatchCount > 0) changes++;
+        if (sequenced && (textBatch.position() > 0 || binaryBatchCount > 0)) endEvent();
+        textBatch.flip();
+        binaryBatch.flip();
+        if (binaryBatchCount == 1) {
+            binaryBatch.position(BATCH_HEADER_LENGTH);
+        } else if (binaryBatchCount > 1) {
+            binaryBatch.putShort(0, (short) (binaryBatch.limit() - 2));
+            binaryBatch.put(2, (byte) Message.BATCH);
+        }
+        if (sequenced) {
+            if (textBatch.hasRemaining()) {
+                if (textLog == null) textLog = new EventLog(owner.getResumeLogBytes());
+                textLog.append(sequence, textBatch);
+            }
+            if (binaryBatch.hasRemaining()) {
+                if (binaryLog == null) binaryLog = new EventLog(owner.getResumeLogBytes());
+                binaryLog.append(sequence, binaryBatch);
+            }
+        }
+        // one copy per codec, shared by everyone it goes to, since the batches are reused for the next event
+        ByteBuffer text = textBatch.hasRemaining() ? copyOf(textBatch) : null;
+        ByteBuffer binary = binaryBatch.hasRemaining() ? copyOf(binaryBatch) : null;
+        for (PlayerSession client : players) {
+            ByteBuffer batch = client.isBinary() ? binary : text;
+            if (batch != null) client.write(batch);
+        }
+        if (spectators != null && eventsEnd > 0) spectators.publish(text.slice(0, eventsEnd));
+        textBatch.clear();
+        binaryBatch.clear();
+        binaryBatchCount = 0;
+    }
+
+    private static ByteBuffer copyOf(ByteBuffer batch) {
+        return ByteBuffer.allocate(batch.remaining()).put(batch).flip();
+    }
+
+    /** Numbers the event in the batches and ends it with a SEQ, the point a reconnecting player resumes from. */
+    private void endEvent() {
+        sequence++;
+        outgoing.set(Message.SEQ).sequence(sequence);
+        if (textBatch.position() > 0) TextCodec.INSTANCE.encode(outgoing, textBatch);
+        if (binaryBatchCount > 0) {
+            BinaryCodec.INSTANCE.encode(outgoing, binaryBatch);
+            binaryBatchCount++;
+        }
+    }
+}
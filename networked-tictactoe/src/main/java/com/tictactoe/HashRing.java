@@ -0,0 +1,99 @@
+package com.tictactoe;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Consistent hashing of room ids onto cluster nodes. Each node is placed at many points on a 64-bit ring and a key
+ * belongs to the first node at or after its hash, so when a node leaves only the keys it owned move, each to the
+ * node after it, and a node that joins takes over about its share from the others and nothing more.
+ *
+ * <p>Every server and router built from the same node list agrees on every owner without talking to each other.
+ */
+final class HashRing {
+    private static final int POINTS_PER_NODE = 128;
+
+    private final List<String> nodes;
+    private final long[] points;
+    private final int[] owners;
+
+    /** Nodes are named {@code host:port}, as clients reach them. */
+    HashRing(List<String> nodes) {
+        if (nodes.isEmpty()) throw new IllegalArgumentException("A cluster needs at least one node");
+        this.nodes = List.copyOf(nodes);
+        long[][] placed = new long[nodes.size() * POINTS_PER_NODE][];
+        for (int node = 0; node < nodes.size(); node++) {
+            for (int i = 0; i < POINTS_PER_NODE; i++) {
+                placed[node * POINTS_PER_NODE + i] = new long[] {hash(nodes.get(node) + "#" + i), node};
+            }
+        }
+        Arrays.sort(placed, (a, b) -> Long.compareUnsigned(a[0], b[0]));
+        this.points = new long[placed.length];
+        this.owners = new int[placed.length];
+        for (int i = 0; i < placed.length; i++) {
+            points[i] = placed[i][0];
+            owners[i] = (int) placed[i][1];
+        }
+    }
+
+    /** Parses a comma-separated {@code host:port} list. */
+    static HashRing parse(String nodeList) {
+        List<String> nodes = new ArrayList<>();
+        for (String node : nodeList.split(",")) {
+            if (!node.isBlank()) nodes.add(node.trim());
+        }
+        return new HashRing(nodes);
+    }
+
+    List<String> nodes() {
+        return nodes;
+    }
+
+    /** The node that owns {@code key}. */
+    String owner(long key) {
+        return nodes.get(owners[first(mix(key))]);
+    }
+
+    /**
+     * Every node in the order {@code key} falls back to them: its owner first, then each node met walking on around
+     * the ring. Skipping the nodes that are down gives the owner the key would have if they had left.
+     */
+    List<String> preference(long key) {
+        List<String> order = new ArrayList<>(nodes.size());
+        boolean[] seen = new boolean[nodes.size()];
+        for (int i = first(mix(key)), n = 0; n < points.length && order.size() < nodes.size(); i++, n++) {
+            int node = owners[i % points.length];
+            if (!seen[node]) {
+                seen[node] = true;
+                order.add(nodes.get(node));
+            }
+        }
+        return order;
+    }
+
+    private int first(long hash) {
+        int low = 0;
+        int high = points.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(points[mid], hash) < 0) low = mid + 1;
+            else high = mid;
+        }
+        return (low == points.length) ? 0 : low;
+    }
+
+    private static long hash(String name) {
+        // FNV-1a, then mixed so that similar names land far apart
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xFF)) * 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+        key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return key ^ (key >>> 33);
+    }
+}
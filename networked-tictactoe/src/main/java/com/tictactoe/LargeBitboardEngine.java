@@ -0,0 +1,101 @@
+package com.tictactoe;
+
+import java.util.*;
+
+/** Boards above 64 cells, e.g. 15x15 gomoku: a long[] per player, with wins found by walking outward from the last move. */
+final class LargeBitboardEngine implements GameEngine {
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    private final int size;
+    private final int winLength;
+    private final long[] xBits;
+    private final long[] oBits;
+    private int moves;
+    private int winStart;
+    private int winStep;
+
+    LargeBitboardEngine(int size, int winLength) {
+        this.size = size;
+        this.winLength = winLength;
+        int words = (size * size + Long.SIZE - 1) / Long.SIZE;
+        this.xBits = new long[words];
+        this.oBits = new long[words];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int winLength() {
+        return winLength;
+    }
+
+    @Override
+    public boolean isLegal(int row, int col) {
+        if (row < 0 || row >= size || col < 0 || col >= size) return false;
+        int cell = row * size + col;
+        return ((xBits[cell >>> 6] | oBits[cell >>> 6]) & (1L << cell)) == 0;
+    }
+
+    @Override
+    public int play(int row, int col, char player) {
+        long[] bits = (player == 'X') ? xBits : oBits;
+        int cell = row * size + col;
+        bits[cell >>> 6] |= 1L << cell;
+        moves++;
+
+        for (int[] d : DIRECTIONS) {
+            int back = count(bits, row, col, -d[0], -d[1]);
+            int forward = count(bits, row, col, d[0], d[1]);
+            if (back + forward + 1 >= winLength) {
+                winStart = (row - d[0] * back) * size + col - d[1] * back;
+                winStep = d[0] * size + d[1];
+                return WIN;
+            }
+        }
+        return (moves == size * size) ? DRAW : IN_PROGRESS;
+    }
+
+    private int count(long[] bits, int row, int col, int dRow, int dCol) {
+        int n = 0;
+        int r = row + dRow;
+        int c = col + dCol;
+        while (n < winLength - 1 && r >= 0 && r < size && c >= 0 && c < size) {
+            int cell = r * size + c;
+            if ((bits[cell >>> 6] & (1L << cell)) == 0) break;
+            n++;
+            r += dRow;
+            c += dCol;
+        }
+        return n;
+    }
+
+    @Override
+    public char cellAt(int row, int col) {
+        int cell = row * size + col;
+        long bit = 1L << cell;
+        if ((xBits[cell >>> 6] & bit) != 0) return 'X';
+        if ((oBits[cell >>> 6] & bit) != 0) return 'O';
+        return '\0';
+    }
+
+    @Override
+    public int moveCount() {
+        return moves;
+    }
+
+    @Override
+    public int winningCells(int[] out) {
+        for (int i = 0; i < winLength; i++) out[i] = winStart + i * winStep;
+        return winLength;
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(xBits, 0);
+        Arrays.fill(oBits, 0);
+        moves = 0;
+    }
+}
@@ -0,0 +1,72 @@
+package com.tictactoe;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * Log-linear histogram in the style of HdrHistogram: every power of two is split into 64 linear buckets, so a
+ * reported value is within 1.6% of the recorded one. Recording is lock-free and allocation-free.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF = SUB_BUCKETS / 2;
+    private static final int BUCKETS = 2048;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry until we store the larger value or someone stores an even larger one
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /** The highest value in the bucket holding the given percentile, or 0 when nothing was recorded. */
+    public long percentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= target) return Math.min(highestValueAt(i), max.get());
+        }
+        return max.get();
+    }
+
+    static int indexOf(long value) {
+        int bucket = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1));
+        long index = (long) bucket * HALF + (value >>> bucket);
+        return (int) Math.min(index, BUCKETS - 1);
+    }
+
+    static long highestValueAt(int index) {
+        int bucket = (index < SUB_BUCKETS) ? 0 : index / HALF - 1;
+        long sub = index - (long) bucket * HALF;
+        return ((sub + 1) << bucket) - 1;
+    }
+}
@@ -0,0 +1,299 @@
+package com.tictactoe;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+/** Headless bots that play complete games against a running server and report move latency. */
+public class LoadTester {
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder games = new LongAdder();
+    private final LongAdder wrongMoves = new LongAdder();
+    private final LongAdder disconnects = new LongAdder();
+    private final LongAdder connectFailures = new LongAdder();
+    private final LongAdder spectatorBytes = new LongAdder();
+    private final List<Socket> spectators = Collections.synchronizedList(new ArrayList<>());
+    private final ScheduledExecutorService scheduler =
+        Executors.newScheduledThreadPool(2, Thread.ofPlatform().daemon().name("bot-timer-", 1).factory());
+    private final long thinkMillis;
+    private volatile boolean running = true;
+
+    public LoadTester(long thinkMillis) {
+        this.thinkMillis = thinkMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        ServerOptions options = new ServerOptions(args);
+        String host = options.get("host", "localhost");
+        int port = options.getInt("port", 12345);
+        int gameCount = options.getInt("games", 100);
+        int seconds = options.getInt("duration", 30);
+        boolean binary = options.getBoolean("binary", false);
+
+        LoadTester tester = new LoadTester(options.getInt("think-ms", 0));
+        int spectatorCount = options.getInt("spectators", 0);
+        if (spectatorCount > 0) {
+            tester.scheduler.schedule(() -> tester.watch(host, options.getInt("spectator-port", port + 1), spectatorCount),
+                1, TimeUnit.SECONDS);
+        }
+        tester.run(host, port, gameCount * 2, seconds, binary);
+    }
+
+    public void run(String host, int port, int botCount, int seconds, boolean binary) throws InterruptedException {
+        System.out.println("Connecting " + botCount + " bots to " + host + ":" + port +
+            (binary ? " (binary)" : " (text)"));
+        // bots connect concurrently: the server only sends ASSIGN once the lobby has paired a bot with another
+        List<Bot> bots = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < botCount; i++) {
+            String name = "bot-" + i;
+            readers.add(Thread.ofVirtual().name(name).start(() -> {
+                ClientConnection connection;
+                try {
+                    connection = new ClientConnection(host, port);
+                    connection.handshake(name, binary);
+                } catch (IOException e) {
+                    connectFailures.increment();
+                    return;
+                }
+                Bot bot = new Bot(connection, name);
+                synchronized (bots) {
+                    if (!running) {
+                        bot.close();
+                        return;
+                    }
+                    bots.add(bot);
+                }
+                connection.listen(bot);
+            }));
+        }
+
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long lastMoves = 0;
+        while (System.nanoTime() < end) {
+            Thread.sleep(Math.min(5000, Math.max(1, TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime()))));
+            long total = moves.sum();
+            System.out.printf("  %ds: %d moves (+%d), %d games, %d wrong moves, %d disconnects%n",
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start), total, total - lastMoves,
+                games.sum(), wrongMoves.sum(), disconnects.sum());
+            lastMoves = total;
+        }
+
+        running = false;
+        long elapsed = System.nanoTime() - start;
+        scheduler.shutdownNow();
+        synchronized (spectators) {
+            for (Socket spectator : spectators) {
+                try {
+                    spectator.close();
+                } catch (IOException e) {
+                    // already closed
+                }
+            }
+        }
+        synchronized (bots) {
+            for (Bot bot : bots) bot.close();
+        }
+        // a bot still waiting to be paired never returns from connect; don't wait for it
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        for (Thread reader : readers) {
+            reader.join(Duration.ofNanos(Math.max(1, deadline - System.nanoTime())));
+        }
+        report(bots, elapsed);
+    }
+
+    private void report(List<Bot> bots, long elapsedNanos) {
+        int count = 0;
+        for (Bot bot : bots) count += bot.latencyCount;
+        long[] latencies = new long[count];
+        int offset = 0;
+        for (Bot bot : bots) {
+            System.arraycopy(bot.latencies, 0, latencies, offset, bot.latencyCount);
+            offset += bot.latencyCount;
+        }
+        Arrays.sort(latencies);
+
+        double seconds = elapsedNanos / 1e9;
+        System.out.println("========================================");
+        System.out.printf("Bots: %d connected, %d failed to connect%n", bots.size(), connectFailures.sum());
+        System.out.printf("Moves: %d (%.1f/s)%n", moves.sum(), moves.sum() / seconds);
+        System.out.printf("Games: %d (%.1f/s)%n", games.sum(), games.sum() / seconds);
+        System.out.printf("Errors: %d wrong moves, %d disconnects%n", wrongMoves.sum(), disconnects.sum());
+        if (!spectators.isEmpty()) {
+            System.out.printf("Spectators: %d received %.1f MB%n", spectators.size(), spectatorBytes.sum() / 1e6);
+        }
+        if (count > 0) {
+            System.out.printf("Move RTT ms: p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f%n",
+                percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+                percentile(latencies, 99.9), latencies[count - 1] / 1e6);
+        }
+    }
+
+    /** Connects {@code count} spectators that all watch the same game and throw away what they receive. */
+    private void watch(String host, int port, int count) {
+        for (int i = 0; i < count; i++) {
+            Thread.ofVirtual().name("spectator-", i).start(() -> {
+                try (Socket socket = new Socket(host, port)) {
+                    spectators.add(socket);
+                    socket.getOutputStream().write("WATCH\n".getBytes(StandardCharsets.UTF_8));
+                    InputStream in = socket.getInputStream();
+                    byte[] buffer = new byte[8192];
+                    int n;
+                    while ((n = in.read(buffer)) > 0) spectatorBytes.add(n);
+                } catch (IOException e) {
+                    // closed at the end of the run, or the game ended
+                }
+            });
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    /** One simulated player. Reads arrive on its reader thread, delayed moves on the scheduler, so both take the bot's lock. */
+    private class Bot implements ClientConnection.Listener {
+        private final ClientConnection connection;
+        private final String name;
+        private final char symbol;
+        private final char[] board;
+        private final int[] free;
+        private final ReentrantLock lock = new ReentrantLock();
+        private boolean myTurn;
+        private boolean gameOver = true;
+        private boolean moveScheduled;
+        private long sentAt;
+        private long[] latencies = new long[1024];
+        private int latencyCount;
+
+        Bot(ClientConnection connection, String name) {
+            this.connection = connection;
+            this.name = name;
+            this.symbol = connection.getSymbol();
+            int size = connection.getBoardSize();
+            this.board = new char[size * size];
+            this.free = new int[size * size];
+        }
+
+        @Override
+        public void onBatch(List<Message> batch) {
+            lock.lock();
+            try {
+                apply(batch);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void apply(List<Message> batch) {
+            for (Message message : batch) {
+                switch (message.getType()) {
+                    case Message.START:
+                    case Message.RESET:
+                        Arrays.fill(board, '\0');
+                        gameOver = false;
+                        myTurn = (symbol == 'X');
+                        break;
+                    case Message.MOVE:
+                        board[message.getRow() * connection.getBoardSize() + message.getCol()] = message.getPlayer();
+                        if (message.getPlayer() == symbol && sentAt != 0) {
+                            recordLatency(System.nanoTime() - sentAt);
+                            sentAt = 0;
+                            moves.increment();
+                        }
+                        break;
+                    case Message.TURN:
+                        myTurn = (message.getPlayer() == symbol);
+                        break;
+                    case Message.WIN:
+                    case Message.DRAW:
+                        gameOver = true;
+                        if (symbol == 'X') {
+                            games.increment();
+                            if (running) send(connection::sendRestartRequest);
+                        }
+                        break;
+                    case Message.RESTART_REQUEST:
+                        if (!message.getName().equals(name)) send(() -> connection.sendRestartConfirm(true));
+                        break;
+                    case Message.WRONG_MOVE:
+                        wrongMoves.increment();
+                        sentAt = 0;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (myTurn && !gameOver && sentAt == 0 && !moveScheduled && running) {
+                if (thinkMillis <= 0) {
+                    pickMove();
+                } else {
+                    moveScheduled = true;
+                    try {
+                        scheduler.schedule(this::move, thinkMillis, TimeUnit.MILLISECONDS);
+                    } catch (RejectedExecutionException e) {
+                        moveScheduled = false;
+                    }
+                }
+            }
+        }
+
+        private void move() {
+            lock.lock();
+            try {
+                moveScheduled = false;
+                if (myTurn && !gameOver && sentAt == 0 && running) pickMove();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void pickMove() {
+            int count = 0;
+            for (int i = 0; i < board.length; i++) {
+                if (board[i] == '\0') free[count++] = i;
+            }
+            if (count == 0) return;
+            int cell = free[ThreadLocalRandom.current().nextInt(count)];
+            sentAt = System.nanoTime();
+            send(() -> connection.sendMove(cell / connection.getBoardSize(), cell % connection.getBoardSize()));
+        }
+
+        private void recordLatency(long nanos) {
+            if (latencyCount == latencies.length) latencies = Arrays.copyOf(latencies, latencyCount * 2);
+            latencies[latencyCount++] = nanos;
+        }
+
+        private void send(Sender sender) {
+            try {
+                sender.send();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        @Override
+        public void onDisconnect(IOException e) {
+            if (running) disconnects.increment();
+        }
+
+        void close() {
+            try {
+                connection.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+    }
+
+    private interface Sender {
+        void send() throws IOException;
+    }
+}
@@ -0,0 +1,149 @@
+package com.tictactoe;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * Matchmaking. Arriving players go into a lock-free queue. A single pairing thread drains it in batches, pairs
+ * players in arrival order, and opens a room for each pair. A player whose opponent leaves before the game starts
+ * comes back here with their room, and the next arrival takes the empty seat.
+ */
+public class Lobby {
+    private final RoomManager rooms;
+    private final long batchNanos;
+    private final int batchSize;
+    private final Queue<Ticket> arrived = new ConcurrentLinkedQueue<>();
+    /** Players carried over from earlier batches; only the pairing thread touches these. */
+    private final ArrayDeque<Ticket> waiting = new ArrayDeque<>();
+    /** Players sent back by a room that fell through, each holding a seat there. */
+    private final ArrayDeque<Ticket> reopened = new ArrayDeque<>();
+    private final AtomicInteger arrivals = new AtomicInteger();
+    private final Thread thread;
+
+    private static final class Ticket {
+        final PlayerSession player;
+        final long enqueuedNanos;
+
+        Ticket(PlayerSession player, long enqueuedNanos) {
+            this.player = player;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    public Lobby(RoomManager rooms, long batchMillis, int batchSize) {
+        this.rooms = rooms;
+        this.batchNanos = TimeUnit.MILLISECONDS.toNanos(batchMillis);
+        this.batchSize = Math.max(2, batchSize);
+        this.thread = Thread.ofPlatform().daemon().name("lobby").unstarted(this::run);
+    }
+
+    public void start() {
+        rooms.setLobby(this);
+        thread.start();
+    }
+
+    /**
+     * Never blocks; the player is started once the pairing thread has seated them. Against the AI too, so that a
+     * reconnecting player's RESUME has until the next batch to arrive before a room is made for them.
+     */
+    public void enqueue(PlayerSession player) {
+        arrived.offer(new Ticket(player, System.nanoTime()));
+        Metrics.INSTANCE.enteredLobby();
+        if (arrivals.incrementAndGet() == batchSize) LockSupport.unpark(thread);
+    }
+
+    /**
+     * Puts a reconnecting player back into the game they dropped out of, instead of pairing them. If they are still
+     * waiting here, the lobby drops them the next time it pairs.
+     */
+    public boolean resume(PlayerSession player, long token, int lastSequence) {
+        return rooms.resume(player, token, lastSequence);
+    }
+
+    private void run() {
+        while (true) {
+            LockSupport.parkNanos(batchNanos);
+            arrivals.set(0);
+            try {
+                pairAll();
+            } catch (RuntimeException e) {
+                Log.error(Log.SERVER, 0, 0, "pairing failed: " + e);
+            }
+        }
+    }
+
+    private void pairAll() {
+        long now = System.nanoTime();
+        Ticket ticket;
+        while ((ticket = arrived.poll()) != null) (ticket.player.room != null ? reopened : waiting).add(ticket);
+        reopened.removeIf(this::abandoned);
+        waiting.removeIf(this::abandoned);
+        if (rooms.isAiEnabled()) {
+            while ((ticket = waiting.poll()) != null) seatAgainstAi(ticket, now);
+            return;
+        }
+        // those sent back have waited longest; they get the first newcomers
+        while (!reopened.isEmpty() && !waiting.isEmpty()) tryMatch(reopened, waiting, now);
+        while (waiting.size() >= 2) tryMatch(waiting, waiting, now);
+    }
+
+    private boolean abandoned(Ticket ticket) {
+        if (ticket.player.isOpen() && !ticket.player.isClaimed()) return false;
+        Metrics.INSTANCE.leftLobby();
+        return true;
+    }
+
+    /**
+     * Pairs the heads of two queues, unless one of them has just resumed an earlier game; that one is dropped and
+     * the other goes back to the front of its queue.
+     */
+    private void tryMatch(ArrayDeque<Ticket> first, ArrayDeque<Ticket> second, long now) {
+        Ticket a = first.poll();
+        Ticket b = second.poll();
+        if (!b.player.claim()) {
+            Metrics.INSTANCE.leftLobby();
+            first.addFirst(a);
+        } else if (!a.player.claim()) {
+            Metrics.INSTANCE.leftLobby();
+            b.player.release();
+            second.addFirst(b);
+        } else {
+            match(a, b, second, now);
+        }
+    }
+
+    private void seatAgainstAi(Ticket ticket, long now) {
+        if (!ticket.player.claim()) {
+            Metrics.INSTANCE.leftLobby();
+            return;
+        }
+        rooms.seatAgainstAi(ticket.player);
+        Metrics.INSTANCE.matched(now - ticket.enqueuedNanos);
+        ticket.player.start();
+    }
+
+    /** Seats the pair in a new room, or {@code b} in the empty seat of the room {@code a} was sent back from. */
+    private void match(Ticket a, Ticket b, ArrayDeque<Ticket> queue, long now) {
+        boolean host = a.player.room != null;
+        GameRoom room = host ? a.player.room : rooms.createRoom();
+        if (!host) a.player.seat(room, room.reserveSeat(a.player));
+        int seat = room.reserveSeat(b.player);
+        if (seat < 0) {
+            // a left again before their seat was filled, and the room closed with them
+            Metrics.INSTANCE.leftLobby();
+            b.player.release();
+            queue.addFirst(b);
+            return;
+        }
+        b.player.seat(room, seat);
+        if (!host) rooms.watch(a.player);
+        rooms.watch(b.player);
+        Metrics.INSTANCE.matched(now - a.enqueuedNanos);
+        Metrics.INSTANCE.matched(now - b.enqueuedNanos);
+        Log.info(Log.ROOM, room.getId(), 0, "matched after " + TimeUnit.NANOSECONDS.toMillis(now - a.enqueuedNanos) + " ms");
+        if (!host) a.player.start();
+        b.player.start();
+    }
+}
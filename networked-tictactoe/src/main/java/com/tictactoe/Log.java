@@ -0,0 +1,228 @@
+package com.tictactoe;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+import java.time.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * Asynchronous logfmt logger. Callers copy an event into a slot of a preallocated ring and return; a daemon
+ * thread formats and prints it. When the ring is full the event is dropped and counted rather than blocking,
+ * and events below the configured level cost one field read.
+ */
+public final class Log {
+    public static final int ERROR = 0;
+    public static final int WARN = 1;
+    public static final int INFO = 2;
+    public static final int DEBUG = 3;
+    private static final String[] LEVEL_NAMES = {"ERROR", "WARN", "INFO", "DEBUG"};
+
+    public static final int SERVER = 0;
+    public static final int CONNECTION = 1;
+    public static final int ROOM = 2;
+    /** Every message a room sends; DEBUG and sampled. */
+    public static final int BROADCAST = 3;
+    /** Every message a player sends; DEBUG and sampled. */
+    public static final int RECEIVED = 4;
+    private static final String[] CATEGORY_NAMES = {"server", "connection", "room", "broadcast", "received"};
+
+    private static final int CAPACITY = 4096;
+    private static final int MASK = CAPACITY - 1;
+    private static final int SLOT_BYTES = 512;
+
+    private static final Slot[] ring = new Slot[CAPACITY];
+    private static final AtomicLong head = new AtomicLong();
+    private static final LongAdder dropped = new LongAdder();
+    private static final int[] sampleRates = new int[CATEGORY_NAMES.length];
+    private static volatile long tail = 0;
+    private static volatile long flushed = 0;
+    private static volatile int level = INFO;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) ring[i] = new Slot();
+        for (int i = 0; i < sampleRates.length; i++) sampleRates[i] = 1;
+        Thread.ofPlatform().daemon().name("log-drain").start(Log::drain);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> awaitDrained(TimeUnit.SECONDS.toNanos(1))));
+    }
+
+    private Log() {
+    }
+
+    /**
+     * Sets the level ({@code error}, {@code warn}, {@code info} or {@code debug}) and per-category sampling, given as
+     * {@code category:N,...} to keep one in N events of that category.
+     */
+    public static void configure(String levelName, String sampling) {
+        for (int i = 0; i < LEVEL_NAMES.length; i++) {
+            if (LEVEL_NAMES[i].equalsIgnoreCase(levelName)) level = i;
+        }
+        if (sampling == null || sampling.isEmpty()) return;
+        for (String entry : sampling.split(",")) {
+            String[] parts = entry.split(":");
+            for (int i = 0; i < CATEGORY_NAMES.length; i++) {
+                if (parts.length == 2 && CATEGORY_NAMES[i].equals(parts[0])) {
+                    sampleRates[i] = Math.max(1, Integer.parseInt(parts[1]));
+                }
+            }
+        }
+    }
+
+    public static boolean isEnabled(int eventLevel) {
+        return eventLevel <= level;
+    }
+
+    public static long getDropped() {
+        return dropped.sum();
+    }
+
+    public static void error(int category, int room, int player, String text) {
+        log(ERROR, category, room, player, text);
+    }
+
+    public static void warn(int category, int room, int player, String text) {
+        log(WARN, category, room, player, text);
+    }
+
+    public static void info(int category, int room, int player, String text) {
+        log(INFO, category, room, player, text);
+    }
+
+    /** Logs a protocol message in its text form without building a String. */
+    public static void message(int category, int room, int player, Message message) {
+        if (DEBUG > level || !sampled(category)) return;
+        Slot slot = claim();
+        if (slot == null) return;
+        slot.fill(DEBUG, category, room, player, null);
+        try {
+            TextCodec.INSTANCE.encode(message, slot.bytes);
+        } catch (BufferOverflowException e) {
+            // keep the part that fit
+        }
+        publish(slot);
+    }
+
+    /** Logs a received line as is. */
+    public static void line(int category, int room, int player, String line) {
+        if (DEBUG > level || !sampled(category)) return;
+        Slot slot = claim();
+        if (slot == null) return;
+        slot.fill(DEBUG, category, room, player, line);
+        publish(slot);
+    }
+
+    private static void log(int eventLevel, int category, int room, int player, String text) {
+        if (eventLevel > level) return;
+        Slot slot = claim();
+        if (slot == null) return;
+        slot.fill(eventLevel, category, room, player, text);
+        publish(slot);
+    }
+
+    private static boolean sampled(int category) {
+        int rate = sampleRates[category];
+        return rate == 1 || ThreadLocalRandom.current().nextInt(rate) == 0;
+    }
+
+    private static Slot claim() {
+        while (true) {
+            long sequence = head.get();
+            if (sequence - tail >= CAPACITY) {
+                dropped.increment();
+                return null;
+            }
+            if (head.compareAndSet(sequence, sequence + 1)) {
+                Slot slot = ring[(int) (sequence & MASK)];
+                slot.claimed = sequence;
+                return slot;
+            }
+        }
+    }
+
+    private static void publish(Slot slot) {
+        slot.published = slot.claimed;
+    }
+
+    private static void drain() {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 64 * 1024);
+        StringBuilder line = new StringBuilder(SLOT_BYTES);
+        long reportedDrops = 0;
+        while (true) {
+            try {
+                long next = tail;
+                Slot slot = ring[(int) (next & MASK)];
+                if (slot.published != next) {
+                    long drops = dropped.sum();
+                    if (drops != reportedDrops) {
+                        out.write(("ts=" + Instant.now() + " level=WARN cat=server msg=\"dropped " +
+                            (drops - reportedDrops) + " log events\"\n").getBytes(StandardCharsets.UTF_8));
+                        reportedDrops = drops;
+                    }
+                    out.flush();
+                    flushed = next;
+                    LockSupport.parkNanos(1_000_000);
+                    continue;
+                }
+                format(slot, line);
+                out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+                slot.text = null;
+                tail = next + 1;
+            } catch (IOException e) {
+                LockSupport.parkNanos(1_000_000);
+            }
+        }
+    }
+
+    private static void format(Slot slot, StringBuilder line) {
+        line.setLength(0);
+        line.append("ts=").append(Instant.ofEpochMilli(slot.time))
+            .append(" level=").append(LEVEL_NAMES[slot.level])
+            .append(" cat=").append(CATEGORY_NAMES[slot.category]);
+        if (slot.room != 0) line.append(" room=").append(slot.room);
+        if (slot.player != 0) line.append(" player=").append(slot.player);
+        line.append(" msg=\"");
+        CharSequence text = (slot.text != null)
+            ? slot.text
+            : StandardCharsets.UTF_8.decode(slot.bytes.flip());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n') continue;
+            if (c == '"' || c == '\\') line.append('\\');
+            line.append(c);
+        }
+        line.append("\"\n");
+    }
+
+    /** Waits until everything logged so far has been written, for at most the given time. */
+    public static void awaitDrained(long timeoutNanos) {
+        long target = head.get();
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (flushed < target && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(1_000_000);
+        }
+    }
+
+    private static final class Slot {
+        final ByteBuffer bytes = ByteBuffer.allocate(SLOT_BYTES);
+        volatile long published = -1;
+        long claimed;
+        long time;
+        int level;
+        int category;
+        int room;
+        int player;
+        String text;
+
+        void fill(int level, int category, int room, int player, String text) {
+            this.time = System.currentTimeMillis();
+            this.level = level;
+            this.category = category;
+            this.room = room;
+            this.player = player;
+            this.text = text;
+            bytes.clear();
+        }
+    }
+}
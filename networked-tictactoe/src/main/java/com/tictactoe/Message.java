@@ -0,0 +1,167 @@
+package com.tictactoe;
+
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+
+/** One protocol message in either direction. Instances are reused, so fields are only valid until the next {@link #set}. */
+public final class Message {
+    public static final int START = 1;
+    public static final int MOVE = 2;
+    public static final int TURN = 3;
+    public static final int WIN = 4;
+    public static final int DRAW = 5;
+    public static final int STATS = 6;
+    public static final int RESET = 7;
+    public static final int WRONG_MOVE = 8;
+    public static final int RESTART_REQUEST = 9;
+    public static final int RESTART_CONFIRMED = 10;
+    public static final int RESTART_DECLINED = 11;
+    public static final int QUIT = 12;
+    public static final int RESTART_CONFIRM = 13;
+    public static final int NAME = 14;
+    public static final int BATCH = 15;
+    /** Server to client: the token that lets this player resume after losing the connection. */
+    public static final int SESSION = 16;
+    /** Server to client: ends each room event with its sequence number, the position a resume starts from. */
+    public static final int SEQ = 17;
+    /** Server to client when it has not heard from the client for a heartbeat interval; answered with PONG. */
+    public static final int PING = 18;
+    public static final int PONG = 19;
+
+    static final String[] TYPE_NAMES = {
+        null, "START", "MOVE", "TURN", "WIN", "DRAW", "STATS", "RESET", "WRONG_MOVE",
+        "RESTART_REQUEST", "RESTART_CONFIRMED", "RESTART_DECLINED", "QUIT", "RESTART_CONFIRM", "", "BATCH",
+        "SESSION", "SEQ", "PING", "PONG"
+    };
+
+    int type;
+    char player;
+    int row;
+    int col;
+    byte[] name;
+    int[] cells;
+    int cellCount;
+    int boardSize;
+    int xWins;
+    int oWins;
+    int draws;
+    boolean confirm;
+    long token;
+    int sequence;
+
+    public Message set(int type) {
+        this.type = type;
+        this.name = null;
+        this.cellCount = 0;
+        return this;
+    }
+
+    public Message move(int row, int col, char player) {
+        this.row = row;
+        this.col = col;
+        this.player = player;
+        return this;
+    }
+
+    public Message player(char player) {
+        this.player = player;
+        return this;
+    }
+
+    public Message name(byte[] name) {
+        this.name = name;
+        return this;
+    }
+
+    public Message cells(int[] cells, int count, int boardSize) {
+        this.cells = cells;
+        this.cellCount = count;
+        this.boardSize = boardSize;
+        return this;
+    }
+
+    public Message stats(int xWins, int oWins, int draws) {
+        this.xWins = xWins;
+        this.oWins = oWins;
+        this.draws = draws;
+        return this;
+    }
+
+    public Message confirm(boolean confirm) {
+        this.confirm = confirm;
+        return this;
+    }
+
+    public Message token(long token) {
+        this.token = token;
+        return this;
+    }
+
+    public Message sequence(int sequence) {
+        this.sequence = sequence;
+        return this;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public char getPlayer() {
+        return player;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public int getCol() {
+        return col;
+    }
+
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    public int getCellRow(int i) {
+        return cells[i] / boardSize;
+    }
+
+    public int getCellCol(int i) {
+        return cells[i] % boardSize;
+    }
+
+    public int getXWins() {
+        return xWins;
+    }
+
+    public int getOWins() {
+        return oWins;
+    }
+
+    public int getDraws() {
+        return draws;
+    }
+
+    public boolean isConfirm() {
+        return confirm;
+    }
+
+    public long getToken() {
+        return token;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public String getName() {
+        return (name == null) ? "" : new String(name, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        ByteBuffer buffer = ByteBuffer.allocate(Protocol.MAX_FRAME_LENGTH);
+        TextCodec.INSTANCE.encode(this, buffer);
+        return new String(buffer.array(), 0, buffer.position() - 1, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,331 @@
+package com.tictactoe;
+
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import javax.management.*;
+
+/** Server-wide counters. Every recording method is lock-free and allocation-free, so it stays on in production. */
+public final class Metrics implements MetricsMXBean {
+    public static final Metrics INSTANCE = new Metrics();
+
+    private final LongAdder connectionsAccepted = new LongAdder();
+    private final LongAdder disconnects = new LongAdder();
+    private final LongAdder gamesStarted = new LongAdder();
+    private final LongAdder gamesEnded = new LongAdder();
+    private final LongAdder gamesCompleted = new LongAdder();
+    private final LongAdder wrongMoves = new LongAdder();
+    private final LongAdder[] messagesIn = new LongAdder[Message.TYPE_NAMES.length];
+    private final LongAdder[] messagesOut = new LongAdder[Message.TYPE_NAMES.length];
+    private final LatencyHistogram moveLatency = new LatencyHistogram();
+    private final LongAdder spectatorsJoined = new LongAdder();
+    private final LongAdder spectatorsLeft = new LongAdder();
+    private final LongAdder lobbyEntered = new LongAdder();
+    private final LongAdder lobbyLeft = new LongAdder();
+    private final LatencyHistogram timeToMatch = new LatencyHistogram();
+    private final LongAdder sessionsSuspended = new LongAdder();
+    private final LongAdder sessionsReleased = new LongAdder();
+    private final LongAdder deltaResumes = new LongAdder();
+    private final LongAdder snapshotResumes = new LongAdder();
+    private final LongAdder idleEvictions = new LongAdder();
+    private final LongAdder turnTimeouts = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder malformed = new LongAdder();
+
+    private Metrics() {
+        for (int i = 0; i < messagesIn.length; i++) {
+            messagesIn[i] = new LongAdder();
+            messagesOut[i] = new LongAdder();
+        }
+    }
+
+    public void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("com.tictactoe:type=Metrics"));
+        } catch (JMException e) {
+            System.err.println("Cannot register metrics MBean: " + e.getMessage());
+        }
+    }
+
+    public void connectionAccepted() {
+        connectionsAccepted.increment();
+    }
+
+    public void disconnected() {
+        disconnects.increment();
+    }
+
+    public void gameStarted() {
+        gamesStarted.increment();
+    }
+
+    public void gameEnded() {
+        gamesEnded.increment();
+    }
+
+    public void gameCompleted() {
+        gamesCompleted.increment();
+    }
+
+    public void wrongMove() {
+        wrongMoves.increment();
+    }
+
+    public void messageIn(int type) {
+        messagesIn[typeIndex(type)].increment();
+    }
+
+    public void messageOut(int type, int recipients) {
+        messagesOut[typeIndex(type)].add(recipients);
+    }
+
+    public void spectatorJoined() {
+        spectatorsJoined.increment();
+    }
+
+    public void spectatorLeft() {
+        spectatorsLeft.increment();
+    }
+
+    public void enteredLobby() {
+        lobbyEntered.increment();
+    }
+
+    public void leftLobby() {
+        lobbyLeft.increment();
+    }
+
+    public void sessionSuspended() {
+        sessionsSuspended.increment();
+    }
+
+    /** A suspended seat was resumed or given up. */
+    public void sessionReleased() {
+        sessionsReleased.increment();
+    }
+
+    /** A player resumed, either from the room's event log or, if they fell too far behind, from a snapshot. */
+    public void resumed(boolean fromLog) {
+        (fromLog ? deltaResumes : snapshotResumes).increment();
+    }
+
+    /** A connection was closed for not answering heartbeats. */
+    public void idleEvicted() {
+        idleEvictions.increment();
+    }
+
+    /** A player ran out of time on their turn and forfeited the game. */
+    public void turnTimedOut() {
+        turnTimeouts.increment();
+    }
+
+    /** A message arrived over its connection's rate limit. */
+    public void rateLimited() {
+        rateLimited.increment();
+    }
+
+    /** A message could not be decoded, or was not one a player may send, and was dropped. */
+    public void malformedInput() {
+        malformed.increment();
+    }
+
+    /** Time a player spent in the lobby before being seated. */
+    public void matched(long nanos) {
+        timeToMatch.record(nanos);
+    }
+
+    /** Time from reading a move off the socket until its broadcast has been handed to both players. */
+    public void moveProcessed(long nanos) {
+        moveLatency.record(nanos);
+    }
+
+    private static int typeIndex(int type) {
+        return (type > 0 && type < Message.TYPE_NAMES.length) ? type : 0;
+    }
+
+    @Override
+    public long getConnectionsAccepted() {
+        return connectionsAccepted.sum();
+    }
+
+    @Override
+    public long getActiveConnections() {
+        return connectionsAccepted.sum() - disconnects.sum();
+    }
+
+    @Override
+    public long getDisconnects() {
+        return disconnects.sum();
+    }
+
+    @Override
+    public long getActiveGames() {
+        return gamesStarted.sum() - gamesEnded.sum();
+    }
+
+    @Override
+    public long getGamesCompleted() {
+        return gamesCompleted.sum();
+    }
+
+    @Override
+    public long getWrongMoves() {
+        return wrongMoves.sum();
+    }
+
+    @Override
+    public Map<String, Long> getMessagesIn() {
+        return byType(messagesIn);
+    }
+
+    @Override
+    public Map<String, Long> getMessagesOut() {
+        return byType(messagesOut);
+    }
+
+    private static Map<String, Long> byType(LongAdder[] counters) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < counters.length; i++) {
+            long count = counters[i].sum();
+            if (count > 0) counts.put(typeName(i), count);
+        }
+        return counts;
+    }
+
+    private static String typeName(int type) {
+        String name = Message.TYPE_NAMES[type];
+        if (type == Message.NAME) return "NAME";
+        return (name == null) ? "UNKNOWN" : name;
+    }
+
+    @Override
+    public long getSpectators() {
+        return spectatorsJoined.sum() - spectatorsLeft.sum();
+    }
+
+    @Override
+    public long getPlayersWaiting() {
+        return lobbyEntered.sum() - lobbyLeft.sum() - timeToMatch.getCount();
+    }
+
+    @Override
+    public long getTimeToMatchP50Millis() {
+        return TimeUnit.NANOSECONDS.toMillis(timeToMatch.percentile(50));
+    }
+
+    @Override
+    public long getTimeToMatchP99Millis() {
+        return TimeUnit.NANOSECONDS.toMillis(timeToMatch.percentile(99));
+    }
+
+    @Override
+    public long getTimeToMatchP999Millis() {
+        return TimeUnit.NANOSECONDS.toMillis(timeToMatch.percentile(99.9));
+    }
+
+    @Override
+    public long getSuspendedSessions() {
+        return sessionsSuspended.sum() - sessionsReleased.sum();
+    }
+
+    @Override
+    public long getResumes() {
+        return deltaResumes.sum() + snapshotResumes.sum();
+    }
+
+    @Override
+    public long getSnapshotResumes() {
+        return snapshotResumes.sum();
+    }
+
+    @Override
+    public long getIdleEvictions() {
+        return idleEvictions.sum();
+    }
+
+    @Override
+    public long getRateLimitedMessages() {
+        return rateLimited.sum();
+    }
+
+    @Override
+    public long getMalformedMessages() {
+        return malformed.sum();
+    }
+
+    @Override
+    public long getTurnTimeouts() {
+        return turnTimeouts.sum();
+    }
+
+    @Override
+    public long getMovesProcessed() {
+        return moveLatency.getCount();
+    }
+
+    @Override
+    public long getMoveLatencyP50Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(moveLatency.percentile(50));
+    }
+
+    @Override
+    public long getMoveLatencyP99Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(moveLatency.percentile(99));
+    }
+
+    @Override
+    public long getMoveLatencyP999Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(moveLatency.percentile(99.9));
+    }
+
+    @Override
+    public long getMoveLatencyMaxMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(moveLatency.getMax());
+    }
+
+    /** Renders everything in the Prometheus text exposition format. */
+    public String render() {
+        StringBuilder out = new StringBuilder();
+        line(out, "tictactoe_connections_accepted_total", getConnectionsAccepted());
+        line(out, "tictactoe_connections_active", getActiveConnections());
+        line(out, "tictactoe_disconnects_total", getDisconnects());
+        line(out, "tictactoe_games_active", getActiveGames());
+        line(out, "tictactoe_games_completed_total", getGamesCompleted());
+        line(out, "tictactoe_wrong_moves_total", getWrongMoves());
+        line(out, "tictactoe_turn_timeouts_total", getTurnTimeouts());
+        line(out, "tictactoe_idle_evictions_total", getIdleEvictions());
+        line(out, "tictactoe_input_rejected_total{reason=\"rate\"}", getRateLimitedMessages());
+        line(out, "tictactoe_input_rejected_total{reason=\"malformed\"}", getMalformedMessages());
+        for (Map.Entry<String, Long> entry : getMessagesIn().entrySet()) {
+            line(out, "tictactoe_messages_in_total{type=\"" + entry.getKey() + "\"}", entry.getValue());
+        }
+        for (Map.Entry<String, Long> entry : getMessagesOut().entrySet()) {
+            line(out, "tictactoe_messages_out_total{type=\"" + entry.getKey() + "\"}", entry.getValue());
+        }
+        line(out, "tictactoe_spectators", getSpectators());
+        line(out, "tictactoe_lobby_waiting", getPlayersWaiting());
+        line(out, "tictactoe_sessions_suspended", getSuspendedSessions());
+        line(out, "tictactoe_resumes_total{sync=\"delta\"}", deltaResumes.sum());
+        line(out, "tictactoe_resumes_total{sync=\"snapshot\"}", snapshotResumes.sum());
+        out.append("# TYPE tictactoe_time_to_match_seconds summary\n");
+        for (double quantile : new double[] {0.5, 0.99, 0.999}) {
+            out.append("tictactoe_time_to_match_seconds{quantile=\"").append(quantile).append("\"} ")
+                .append(timeToMatch.percentile(quantile * 100) / 1e9).append('\n');
+        }
+        line(out, "tictactoe_time_to_match_seconds_count", timeToMatch.getCount());
+        out.append("# TYPE tictactoe_move_latency_seconds summary\n");
+        for (double quantile : new double[] {0.5, 0.9, 0.99, 0.999}) {
+            out.append("tictactoe_move_latency_seconds{quantile=\"").append(quantile).append("\"} ")
+                .append(moveLatency.percentile(quantile * 100) / 1e9).append('\n');
+        }
+        out.append("tictactoe_move_latency_seconds_sum ").append(moveLatency.getSum() / 1e9).append('\n');
+        line(out, "tictactoe_move_latency_seconds_count", moveLatency.getCount());
+        out.append("tictactoe_move_latency_seconds_max ").append(moveLatency.getMax() / 1e9).append('\n');
+        return out.toString();
+    }
+
+    private static void line(StringBuilder out, String name, long value) {
+        out.append(name).append(' ').append(value).append('\n');
+    }
+}
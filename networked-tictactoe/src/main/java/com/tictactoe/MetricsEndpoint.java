@@ -0,0 +1,37 @@
+package com.tictactoe;
+
+import com.sun.net.httpserver.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/** Serves {@link Metrics#render()} as plain text on the loopback interface, at {@code /metrics}, plus any extra pages. */
+public final class MetricsEndpoint {
+    private final HttpServer server;
+
+    public MetricsEndpoint(int port, Metrics metrics) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        serve("/metrics", "text/plain; version=0.0.4; charset=utf-8", metrics::render);
+        server.setExecutor(Executors.newSingleThreadExecutor(Thread.ofPlatform().daemon().name("metrics-http").factory()));
+    }
+
+    public void serve(String path, String contentType, Supplier<String> page) {
+        server.createContext(path, exchange -> {
+            byte[] body = page.get().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("Metrics on http://" + server.getAddress().getHostString() + ":" +
+            server.getAddress().getPort() + "/metrics");
+    }
+}
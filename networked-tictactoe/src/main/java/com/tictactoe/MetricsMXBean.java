@@ -0,0 +1,56 @@
+package com.tictactoe;
+
+import java.util.*;
+
+/** The JMX view of {@link Metrics}, registered as {@code com.tictactoe:type=Metrics}. */
+public interface MetricsMXBean {
+    long getConnectionsAccepted();
+
+    long getActiveConnections();
+
+    long getDisconnects();
+
+    long getActiveGames();
+
+    long getGamesCompleted();
+
+    long getWrongMoves();
+
+    long getTurnTimeouts();
+
+    long getIdleEvictions();
+
+    long getRateLimitedMessages();
+
+    long getMalformedMessages();
+
+    Map<String, Long> getMessagesIn();
+
+    Map<String, Long> getMessagesOut();
+
+    long getSpectators();
+
+    long getPlayersWaiting();
+
+    long getTimeToMatchP50Millis();
+
+    long getTimeToMatchP99Millis();
+
+    long getTimeToMatchP999Millis();
+
+    long getSuspendedSessions();
+
+    long getResumes();
+
+    long getSnapshotResumes();
+
+    long getMovesProcessed();
+
+    long getMoveLatencyP50Micros();
+
+    long getMoveLatencyP99Micros();
+
+    long getMoveLatencyP999Micros();
+
+    long getMoveLatencyMaxMicros();
+}
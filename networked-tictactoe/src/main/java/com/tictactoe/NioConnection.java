@@ -0,0 +1,269 @@
+package com.tictactoe;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.*;
+
+class NioConnection extends PlayerSession implements EventLoop.Handler {
+    private static final byte[] RESUME_PREFIX = (Protocol.RESUME + " ").getBytes(StandardCharsets.US_ASCII);
+
+    private final SocketChannel channel;
+    private final EventLoop loop;
+    private final Lobby lobby;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(Protocol.MAX_FRAME_LENGTH + 2);
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private SelectionKey key;
+    private boolean handshakeDone = false;
+    private boolean started = false;
+    /** Set while the rate limiter has stopped this connection being read. */
+    private boolean throttled = false;
+    private volatile boolean closed = false;
+
+    NioConnection(SocketChannel channel, EventLoop loop, OutboundQueue outbound, TokenBucket limiter, Lobby lobby) {
+        super(outbound, limiter);
+        this.channel = channel;
+        this.loop = loop;
+        this.lobby = lobby;
+    }
+
+    void open() {
+        try {
+            key = loop.register(channel, SelectionKey.OP_READ, this);
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    @Override
+    protected void start() {
+        loop.execute(this::begin);
+    }
+
+    private void begin() {
+        started = true;
+        if (closed) {
+            room.leave(this);
+            return;
+        }
+        try {
+            // a RESUME already sent is answered with RESUMED alone, and gives this seat back
+            if (channel.read(readBuffer) < 0) {
+                close();
+                return;
+            }
+            if (!startsWithResume()) writeLine(assignMessage());
+            parse();
+        } catch (IOException e) {
+            exceptionCaught(e);
+        }
+    }
+
+    @Override
+    protected boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public void handle(SelectionKey key) throws IOException {
+        if (key.isReadable()) read();
+        if (key.isValid() && key.isWritable()) flush();
+    }
+
+    @Override
+    public void exceptionCaught(Exception e) {
+        Log.warn(Log.CONNECTION, roomId(), playerId, "error: " + e);
+        close();
+    }
+
+    private void read() throws IOException {
+        int n = channel.read(readBuffer);
+        if (n < 0) {
+            Log.info(Log.CONNECTION, roomId(), playerId, "disconnected");
+            close();
+            return;
+        }
+        readNanos = System.nanoTime();
+        parse();
+    }
+
+    /**
+     * Input that arrives while the player waits in the lobby stays buffered until they are seated, unless it is a
+     * RESUME: a reconnecting player sends that straight away rather than waiting for ASSIGN.
+     */
+    private void parse() throws IOException {
+        if (!started) {
+            if (!resumeRequested()) {
+                if (!readBuffer.hasRemaining()) throw new IOException("Message too long");
+                return;
+            }
+            started = true;
+        }
+        readBuffer.flip();
+        boolean progress = true;
+        while (progress && !closed) {
+            progress = isBinary() ? readFrame() : readLine();
+        }
+        readBuffer.compact();
+        if (!readBuffer.hasRemaining() && !throttled) throw new IOException("Message too long");
+        if (!closed) updateInterest();
+    }
+
+    /**
+     * Applies the rate limit to the complete message at the front of the buffer. True to handle it; otherwise the
+     * caller skips it if {@link #throttled} and {@link #closed} are still clear, and stops reading if not.
+     */
+    private boolean admit() {
+        TokenBucket.Penalty penalty = overLimit();
+        if (penalty == null) return true;
+        if (penalty == TokenBucket.Penalty.THROTTLE) {
+            throttled = true;
+            limiter.whenAvailable(() -> loop.execute(this::unthrottle));
+        } else if (penalty == TokenBucket.Penalty.DISCONNECT) {
+            close();
+        }
+        return false;
+    }
+
+    private void unthrottle() {
+        throttled = false;
+        if (closed) return;
+        try {
+            parse();
+        } catch (IOException e) {
+            exceptionCaught(e);
+        }
+    }
+
+    private boolean resumeRequested() {
+        return startsWithResume() && claim();
+    }
+
+    private boolean startsWithResume() {
+        if (readBuffer.position() < RESUME_PREFIX.length) return false;
+        for (int i = 0; i < RESUME_PREFIX.length; i++) {
+            if (readBuffer.get(i) != RESUME_PREFIX[i]) return false;
+        }
+        return true;
+    }
+
+    private boolean readLine() {
+        int start = readBuffer.position();
+        int end = start;
+        while (end < readBuffer.limit() && readBuffer.get(end) != '\n') end++;
+        if (end == readBuffer.limit()) return false;
+
+        if (handshakeDone && !admit()) {
+            if (throttled || closed) return false;
+            readBuffer.position(end + 1);
+            return true;
+        }
+        int length = end - start;
+        if (length > 0 && readBuffer.get(end - 1) == '\r') length--;
+        String line = new String(readBuffer.array(), start, length, StandardCharsets.UTF_8);
+        readBuffer.position(end + 1);
+        onLine(line);
+        return true;
+    }
+
+    private boolean readFrame() throws IOException {
+        if (readBuffer.remaining() < 2) return false;
+        int length = readBuffer.getShort(readBuffer.position()) & 0xFFFF;
+        if (length == 0 || length > Protocol.MAX_FRAME_LENGTH) throw new IOException("Bad frame length " + length);
+        if (readBuffer.remaining() < length + 2) return false;
+
+        int limit = readBuffer.limit();
+        int end = readBuffer.position() + 2 + length;
+        if (!admit()) {
+            if (throttled || closed) return false;
+            readBuffer.position(end);
+            return true;
+        }
+        readBuffer.position(readBuffer.position() + 2).limit(end);
+        boolean open = handleFrame(readBuffer);
+        readBuffer.limit(limit).position(end);
+        if (!open) close();
+        return true;
+    }
+
+    private void onLine(String line) {
+        if (!handshakeDone) {
+            handshakeDone = true;
+            if (isResumeLine(line)) {
+                if (!resume(line, lobby)) {
+                    Log.info(Log.CONNECTION, 0, 0, "resume refused");
+                    close();
+                }
+                return;
+            }
+            if (Protocol.BINARY_HANDSHAKE.equals(line)) {
+                writeLine(Protocol.BINARY_HANDSHAKE);
+                codec = BinaryCodec.INSTANCE;
+                room.join(this);
+                return;
+            }
+            room.join(this);
+            onName(line);
+        } else if (!handleLine(line)) {
+            close();
+        }
+    }
+
+    @Override
+    protected void wakeWriter() {
+        if (loop.inEventLoop()) {
+            flushQuietly();
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            loop.execute(this::flushQuietly);
+        }
+    }
+
+    private void flushQuietly() {
+        flushScheduled.set(false);
+        try {
+            flush();
+        } catch (IOException e) {
+            exceptionCaught(e);
+        }
+    }
+
+    private void flush() throws IOException {
+        if (closed || key == null) return;
+        ByteBuffer buffer;
+        while ((buffer = outbound.peek()) != null) {
+            channel.write(buffer);
+            if (buffer.hasRemaining()) break;
+            outbound.remove();
+        }
+        if (outbound.needsResync()) loop.execute(this::resyncIfNeeded);
+        updateInterest();
+    }
+
+    private void updateInterest() {
+        int ops = 0;
+        if (outbound.isReadable() && !throttled) ops |= SelectionKey.OP_READ;
+        if (!outbound.isEmpty()) ops |= SelectionKey.OP_WRITE;
+        key.interestOps(ops);
+    }
+
+    @Override
+    protected void closeAsync() {
+        loop.execute(this::close);
+    }
+
+    void close() {
+        if (closed) return;
+        closed = true;
+        Metrics.INSTANCE.disconnected();
+        stopHeartbeat();
+        if (started && room != null) room.leave(this);
+        outbound.close();
+        if (key != null) key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.tictactoe;
+
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.util.function.*;
+
+public class NioServer {
+    /** Large enough for a burst of players arriving at the lobby at once. */
+    static final int BACKLOG = 1024;
+
+    private final int port;
+    private final Lobby lobby;
+    private final EventLoop[] loops;
+    private final Supplier<OutboundQueue> queues;
+    private final Supplier<TokenBucket> limiters;
+    private int nextLoop = 0;
+
+    public NioServer(int port, int threads, Lobby lobby, Supplier<OutboundQueue> queues,
+                     Supplier<TokenBucket> limiters) throws IOException {
+        this.port = port;
+        this.lobby = lobby;
+        this.queues = queues;
+        this.limiters = limiters;
+        this.loops = new EventLoop[Math.max(1, threads)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop("event-loop-" + i);
+        }
+    }
+
+    public void start() throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port), BACKLOG);
+        server.configureBlocking(false);
+
+        for (EventLoop loop : loops) loop.start();
+        loops[0].execute(() -> {
+            try {
+                loops[0].register(server, SelectionKey.OP_ACCEPT, key -> accept(server));
+            } catch (ClosedChannelException e) {
+                System.err.println("Server error: " + e.getMessage());
+            }
+        });
+        System.out.println("NIO server running " + loops.length + " event loops");
+    }
+
+    private void accept(ServerSocketChannel server) throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setKeepAlive(true);
+            channel.socket().setTcpNoDelay(true);
+            Metrics.INSTANCE.connectionAccepted();
+
+            Log.info(Log.CONNECTION, 0, 0, "connected from " + channel.socket().getInetAddress().getHostAddress());
+
+            EventLoop loop = loops[nextLoop];
+            nextLoop = (nextLoop + 1) % loops.length;
+            NioConnection connection = new NioConnection(channel, loop, queues.get(), limiters.get(), lobby);
+            loop.execute(connection::open);
+            lobby.enqueue(connection);
+        }
+    }
+}
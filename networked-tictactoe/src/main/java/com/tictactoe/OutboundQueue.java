@@ -0,0 +1,164 @@
+package com.tictactoe;
+
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.locks.*;
+
+/** Bytes waiting to be written to one connection, bounded so a slow reader cannot hold up its game. */
+public class OutboundQueue {
+    public enum Overflow {
+        /** Close the connection once the limit is exceeded. */
+        DISCONNECT,
+        /** Throw away what is queued (except a partly written head) and send the room's current state once drained. */
+        COALESCE,
+        /** Stop reading from the connection until it catches up; disconnect at four times the limit. */
+        BACKPRESSURE
+    }
+
+    public static final int ACCEPTED = 0;
+    public static final int DISCARDED = 1;
+    public static final int OVERFLOW = 2;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition drained = lock.newCondition();
+    private final Deque<ByteBuffer> buffers = new ArrayDeque<>();
+    private final int limit;
+    private final Overflow policy;
+    private int queuedBytes = 0;
+    private boolean discarding = false;
+    private boolean paused = false;
+    private boolean closed = false;
+
+    public OutboundQueue(int limit, Overflow policy) {
+        this.limit = limit;
+        this.policy = policy;
+    }
+
+    public Overflow getPolicy() {
+        return policy;
+    }
+
+    /** Queues {@code buffer} itself, not a copy; it is written from its position to its limit. */
+    public int offer(ByteBuffer buffer) {
+        lock.lock();
+        try {
+            if (closed || discarding) return DISCARDED;
+            int hardLimit = (policy == Overflow.BACKPRESSURE) ? limit * 4 : limit;
+            if (queuedBytes + buffer.remaining() > hardLimit && !buffers.isEmpty()) {
+                if (policy != Overflow.COALESCE) return OVERFLOW;
+                ByteBuffer head = buffers.poll();
+                buffers.clear();
+                buffers.add(head);
+                queuedBytes = head.limit();
+                discarding = true;
+                return OVERFLOW;
+            }
+            buffers.add(buffer);
+            queuedBytes += buffer.remaining();
+            if (queuedBytes > limit) paused = true;
+            notEmpty.signal();
+            return ACCEPTED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public ByteBuffer peek() {
+        lock.lock();
+        try {
+            return buffers.peek();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Removes the head once it has been written completely. */
+    public void remove() {
+        lock.lock();
+        try {
+            ByteBuffer head = buffers.poll();
+            if (head != null) queuedBytes -= head.limit();
+            if (paused && queuedBytes <= limit / 2) {
+                paused = false;
+                drained.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Blocks until something is queued and returns it without removing it, or null once closed. */
+    public ByteBuffer awaitHead() throws InterruptedException {
+        lock.lock();
+        try {
+            while (buffers.isEmpty() && !closed) notEmpty.await();
+            return buffers.peek();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return buffers.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** False while reads should be held back because the peer is not keeping up. */
+    public boolean isReadable() {
+        lock.lock();
+        try {
+            return policy != Overflow.BACKPRESSURE || !paused;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Blocks a reading thread while reads are held back. */
+    public void awaitReadable() throws InterruptedException {
+        lock.lock();
+        try {
+            while (policy == Overflow.BACKPRESSURE && paused && !closed) drained.await();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean needsResync() {
+        lock.lock();
+        try {
+            return discarding && buffers.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Leaves discarding mode; returns false if there was nothing to resynchronize. */
+    public boolean endDiscard() {
+        lock.lock();
+        try {
+            boolean wasDiscarding = discarding;
+            discarding = false;
+            return wasDiscarding;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            buffers.clear();
+            queuedBytes = 0;
+            notEmpty.signalAll();
+            drained.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.tictactoe;
+
+import java.util.*;
+
+/**
+ * Perfect moves for classic 3x3 tic-tac-toe. Only one board per symmetry class (rotations and reflections) is
+ * stored; a lookup maps the position onto that board and the stored move back.
+ */
+final class PerfectPlay {
+    private static final int CELLS = 9;
+    private static final int POSITIONS = 19683;
+    private static final int[][] LINES = {
+        {0, 1, 2}, {3, 4, 5}, {6, 7, 8}, {0, 3, 6}, {1, 4, 7}, {2, 5, 8}, {0, 4, 8}, {2, 4, 6}
+    };
+    private static final int[] POW3 = new int[CELLS];
+    /** SYMMETRIES[s][i] is where cell i ends up under symmetry s. */
+    private static final int[][] SYMMETRIES = new int[8][CELLS];
+
+    private static final int[] canonicalCodes;
+    private static final byte[] canonicalMoves;
+
+    static {
+        POW3[0] = 1;
+        for (int i = 1; i < CELLS; i++) POW3[i] = POW3[i - 1] * 3;
+        for (int s = 0; s < 8; s++) {
+            for (int i = 0; i < CELLS; i++) {
+                int row = i / 3;
+                int col = i % 3;
+                for (int r = 0; r < s % 4; r++) {
+                    int t = row;
+                    row = col;
+                    col = 2 - t;
+                }
+                if (s >= 4) col = 2 - col;
+                SYMMETRIES[s][i] = row * 3 + col;
+            }
+        }
+
+        int[] scores = new int[POSITIONS];
+        Arrays.fill(scores, Integer.MIN_VALUE);
+        TreeMap<Integer, Integer> table = new TreeMap<>();
+        collect(new int[CELLS], 1, scores, table, new boolean[POSITIONS]);
+        canonicalCodes = new int[table.size()];
+        canonicalMoves = new byte[table.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> entry : table.entrySet()) {
+            canonicalCodes[i] = entry.getKey();
+            canonicalMoves[i++] = (byte) (int) entry.getValue();
+        }
+    }
+
+    private PerfectPlay() {
+    }
+
+    static int tableSize() {
+        return canonicalCodes.length;
+    }
+
+    /** Returns the cell index (row * 3 + col) to play, or -1 if the game is over. {@code board} holds 0, 1 (X) or 2 (O). */
+    static int bestMove(int[] board) {
+        int code = encode(board);
+        int best = Integer.MAX_VALUE;
+        int symmetry = 0;
+        for (int s = 0; s < 8; s++) {
+            int transformed = transform(code, s);
+            if (transformed < best) {
+                best = transformed;
+                symmetry = s;
+            }
+        }
+        int index = Arrays.binarySearch(canonicalCodes, best);
+        if (index < 0) return -1;
+        int move = canonicalMoves[index];
+        for (int i = 0; i < CELLS; i++) {
+            if (SYMMETRIES[symmetry][i] == move) return i;
+        }
+        return -1;
+    }
+
+    private static void collect(int[] board, int player, int[] scores, Map<Integer, Integer> table, boolean[] seen) {
+        int code = encode(board);
+        if (seen[code]) return;
+        seen[code] = true;
+        if (winner(board) != 0 || isFull(board)) return;
+
+        int canonical = canonical(code);
+        if (!table.containsKey(canonical)) {
+            int[] canonicalBoard = decode(canonical);
+            int bestMove = -1;
+            int bestScore = Integer.MIN_VALUE;
+            for (int i = 0; i < CELLS; i++) {
+                if (canonicalBoard[i] != 0) continue;
+                canonicalBoard[i] = player;
+                int score = -negamax(canonicalBoard, 3 - player, scores);
+                canonicalBoard[i] = 0;
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestMove = i;
+                }
+            }
+            table.put(canonical, bestMove);
+        }
+
+        for (int i = 0; i < CELLS; i++) {
+            if (board[i] != 0) continue;
+            board[i] = player;
+            collect(board, 3 - player, scores, table, seen);
+            board[i] = 0;
+        }
+    }
+
+    /** Score for the player to move; quicker wins and slower losses score higher. */
+    private static int negamax(int[] board, int player, int[] scores) {
+        int code = encode(board);
+        if (scores[code] != Integer.MIN_VALUE) return scores[code];
+        int empty = 0;
+        for (int cell : board) if (cell == 0) empty++;
+        int score;
+        if (winner(board) != 0) {
+            score = -(empty + 1);
+        } else if (empty == 0) {
+            score = 0;
+        } else {
+            score = Integer.MIN_VALUE;
+            for (int i = 0; i < CELLS; i++) {
+                if (board[i] != 0) continue;
+                board[i] = player;
+                score = Math.max(score, -negamax(board, 3 - player, scores));
+                board[i] = 0;
+            }
+        }
+        scores[code] = score;
+        return score;
+    }
+
+    private static int winner(int[] board) {
+        for (int[] line : LINES) {
+            int a = board[line[0]];
+            if (a != 0 && a == board[line[1]] && a == board[line[2]]) return a;
+        }
+        return 0;
+    }
+
+    private static boolean isFull(int[] board) {
+        for (int cell : board) if (cell == 0) return false;
+        return true;
+    }
+
+    private static int encode(int[] board) {
+        int code = 0;
+        for (int i = 0; i < CELLS; i++) code += board[i] * POW3[i];
+        return code;
+    }
+
+    private static int[] decode(int code) {
+        int[] board = new int[CELLS];
+        for (int i = 0; i < CELLS; i++) {
+            board[i] = code % 3;
+            code /= 3;
+        }
+        return board;
+    }
+
+    private static int transform(int code, int symmetry) {
+        int result = 0;
+        for (int i = 0; i < CELLS; i++) {
+            result += (code / POW3[i] % 3) * POW3[SYMMETRIES[symmetry][i]];
+        }
+        return result;
+    }
+
+    private static int canonical(int code) {
+        int best = code;
+        for (int s = 1; s < 8; s++) best = Math.min(best, transform(code, s));
+        return best;
+    }
+}
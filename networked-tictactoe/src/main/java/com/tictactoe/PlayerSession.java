@@ -0,0 +1,321 @@
+package com.tictactoe;
+
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.*;
+
+public abstract class PlayerSession {
+    private static final ThreadLocal<ByteBuffer> ENCODE_BUFFER =
+        ThreadLocal.withInitial(() -> ByteBuffer.allocate(Protocol.MAX_FRAME_LENGTH));
+    /** The heartbeat's PING in each codec, encoded once for every connection and tick. */
+    private static final ByteBuffer TEXT_PING = encodeOnce(TextCodec.INSTANCE, new Message().set(Message.PING));
+    private static final ByteBuffer BINARY_PING = encodeOnce(BinaryCodec.INSTANCE, new Message().set(Message.PING));
+
+    protected GameRoom room;
+    protected int playerId;
+    protected String playerName;
+    protected byte[] nameBytes;
+    protected Codec codec = TextCodec.INSTANCE;
+    protected final OutboundQueue outbound;
+    /** Limits the messages this player may send; null for no limit. */
+    protected final TokenBucket limiter;
+    private boolean overLimit;
+    private final Message incoming = new Message();
+    private final AtomicBoolean claimed = new AtomicBoolean();
+    /** Identifies this seat to a later RESUME; 0 until the room has opened a session for it. */
+    long sessionToken;
+    /** Set when the player quits on purpose, so losing the connection afterwards does not hold the seat. */
+    boolean quitting;
+    /** Set once a resumed connection has taken this seat over; anything still arriving here is ignored. */
+    volatile boolean superseded;
+    /** The pending heartbeat check, cancelled when the connection closes. */
+    volatile TimerWheel.Timeout heartbeat;
+    private volatile boolean heard;
+    private int silentHeartbeats;
+    /** When the bytes being handled were read off the socket, for the move latency histogram. */
+    protected long readNanos;
+
+    protected PlayerSession(GameRoom room, int playerId, OutboundQueue outbound) {
+        this(room, playerId, outbound, null);
+    }
+
+    private PlayerSession(GameRoom room, int playerId, OutboundQueue outbound, TokenBucket limiter) {
+        this.room = room;
+        this.playerId = playerId;
+        this.outbound = outbound;
+        this.limiter = limiter;
+    }
+
+    /** A player who waits in the {@link Lobby} until {@link #seat} gives them a room. */
+    protected PlayerSession(OutboundQueue outbound, TokenBucket limiter) {
+        this(null, 0, outbound, limiter);
+    }
+
+    void seat(GameRoom room, int playerId) {
+        this.room = room;
+        this.playerId = playerId;
+    }
+
+    /** Taken by whichever seats this connection first: the lobby, or a RESUME of an earlier session. */
+    boolean claim() {
+        return claimed.compareAndSet(false, true);
+    }
+
+    void release() {
+        claimed.set(false);
+    }
+
+    boolean isClaimed() {
+        return claimed.get();
+    }
+
+    /** Moves everything that identifies the seat of {@code old} over to this connection. Caller holds the room lock. */
+    void takeOver(PlayerSession old) {
+        room = old.room;
+        playerId = old.playerId;
+        playerName = old.playerName;
+        nameBytes = old.nameBytes;
+        codec = old.codec;
+        sessionToken = old.sessionToken;
+    }
+
+    /** Called once the player has a seat; sends ASSIGN and starts the game protocol. */
+    protected void start() {
+    }
+
+    /** False once the connection is known to be gone, so the lobby can drop a waiting player. */
+    protected boolean isOpen() {
+        return true;
+    }
+
+    /**
+     * True for a player at the other end of a connection: they are sent heartbeats, and losing the connection
+     * holds their seat for a RESUME rather than giving it up.
+     */
+    protected boolean isRemote() {
+        return true;
+    }
+
+    /**
+     * Called by the heartbeat once per interval. A player heard from since the last call is fine; one who was not
+     * is sent a PING, and closed once that has happened {@code idleHeartbeats} times in a row. False once closed.
+     */
+    boolean checkLiveness(int idleHeartbeats) {
+        if (heard) {
+            heard = false;
+            silentHeartbeats = 0;
+            return true;
+        }
+        if (++silentHeartbeats >= idleHeartbeats) {
+            Log.info(Log.CONNECTION, roomId(), playerId, "silent for " + silentHeartbeats + " heartbeats, closing");
+            Metrics.INSTANCE.idleEvicted();
+            closeAsync();
+            return false;
+        }
+        // before the name the client is still in its handshake, where a PING would be in the way
+        if (playerName != null) {
+            write((isBinary() ? BINARY_PING : TEXT_PING).duplicate());
+            Metrics.INSTANCE.messageOut(Message.PING, 1);
+        }
+        return true;
+    }
+
+    protected void stopHeartbeat() {
+        TimerWheel.Timeout timeout = heartbeat;
+        if (timeout != null) timeout.cancel();
+    }
+
+    protected int roomId() {
+        return (room != null) ? room.getId() : 0;
+    }
+
+    public char getSymbol() {
+        return (playerId == 1) ? 'X' : 'O';
+    }
+
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    public byte[] getNameBytes() {
+        return nameBytes;
+    }
+
+    public boolean isBinary() {
+        return codec == BinaryCodec.INSTANCE;
+    }
+
+    protected String assignMessage() {
+        return "ASSIGN " + playerId + " " + room.getBoardSize() + " " + room.getWinLength();
+    }
+
+    protected String resumedMessage() {
+        return Protocol.RESUMED + " " + playerId + " " + room.getBoardSize() + " " + room.getWinLength();
+    }
+
+    protected static boolean isResumeLine(String line) {
+        return line != null && line.startsWith(Protocol.RESUME + " ");
+    }
+
+    /**
+     * Takes over the seat named by a {@code RESUME <token> <sequence>} line. False if the session is unknown or
+     * has expired, in which case the caller closes the connection.
+     */
+    protected boolean resume(String line, Lobby lobby) {
+        if (room != null) {
+            // seated by the lobby before the RESUME was read; give that seat back
+            room.leave(this);
+            room = null;
+        }
+        String[] parts = line.split(" ");
+        try {
+            return parts.length == 3
+                && lobby.resume(this, Long.parseUnsignedLong(parts[1], 16), Integer.parseInt(parts[2]));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    protected void onName(String name) {
+        heard = true;
+        playerName = name;
+        if (playerName == null || playerName.isEmpty()) playerName = "Player" + playerId;
+        playerName = Protocol.truncateName(playerName);
+        nameBytes = playerName.getBytes(StandardCharsets.UTF_8);
+        Metrics.INSTANCE.messageIn(Message.NAME);
+
+        Log.info(Log.CONNECTION, room.getId(), playerId, "name " + playerName + (isBinary() ? " (binary)" : ""));
+        room.setPlayerName(getSymbol(), nameBytes);
+    }
+
+    /**
+     * Takes a token for the next message before it is decoded. Null if there was one; otherwise the penalty the
+     * caller applies, since only the connection knows how to stop reading or close.
+     */
+    protected final TokenBucket.Penalty overLimit() {
+        if (limiter == null) return null;
+        long now = System.nanoTime();
+        // a sender that stays over the limit is only reported once, until it has been quiet long enough
+        if (overLimit && limiter.isFull(now)) overLimit = false;
+        if (limiter.tryTake(now)) return null;
+        Metrics.INSTANCE.rateLimited();
+        if (!overLimit) {
+            overLimit = true;
+            Log.warn(Log.CONNECTION, roomId(), playerId, "over the message rate limit, " +
+                limiter.getPenalty().name().toLowerCase());
+        }
+        return limiter.getPenalty();
+    }
+
+    protected boolean handleLine(String inputLine) {
+        heard = true;
+        Log.line(Log.RECEIVED, room.getId(), playerId, inputLine);
+        if (!TextCodec.decodeRequest(inputLine, incoming)) return malformed();
+        return handleMessage(incoming);
+    }
+
+    protected boolean handleFrame(ByteBuffer frame) {
+        heard = true;
+        if (!BinaryCodec.decodeRequest(frame, incoming)) return malformed();
+        Log.message(Log.RECEIVED, room.getId(), playerId, incoming);
+        if (incoming.type == Message.NAME) {
+            if (playerName == null) onName(incoming.getName());
+            return true;
+        }
+        return handleMessage(incoming);
+    }
+
+    /** Drops input that is not a valid request. False, closing the connection, if the limiter's penalty says so. */
+    private boolean malformed() {
+        Metrics.INSTANCE.malformedInput();
+        return limiter == null || limiter.getPenalty() != TokenBucket.Penalty.DISCONNECT;
+    }
+
+    private boolean handleMessage(Message m) {
+        if (superseded) return false;
+        Metrics.INSTANCE.messageIn(m.type);
+        switch (m.type) {
+            case Message.MOVE:
+                if (m.player != getSymbol() || !room.mayMove(m.player, m.row, m.col)) {
+                    // answered without the room lock, so a stream of bad moves never holds up the game
+                    Metrics.INSTANCE.wrongMove();
+                    send(m.set(Message.WRONG_MOVE));
+                    break;
+                }
+                room.makeMove(m.row, m.col, m.player, this);
+                if (readNanos != 0) Metrics.INSTANCE.moveProcessed(System.nanoTime() - readNanos);
+                break;
+            case Message.RESTART_REQUEST:
+                room.requestRestart(this);
+                break;
+            case Message.RESTART_CONFIRM:
+                room.confirmRestart(m.confirm, this);
+                break;
+            case Message.QUIT:
+                quitting = true;
+                room.quit(this);
+                return false;
+            default:
+                break;
+        }
+        return true;
+    }
+
+    public void send(Message message) {
+        ByteBuffer buffer = ENCODE_BUFFER.get();
+        buffer.clear();
+        codec.encode(message, buffer);
+        buffer.flip();
+        Metrics.INSTANCE.messageOut(message.type, 1);
+        writeCopy(buffer);
+    }
+
+    private static ByteBuffer encodeOnce(Codec codec, Message message) {
+        ByteBuffer buffer = ByteBuffer.allocate(Protocol.MAX_FRAME_LENGTH);
+        codec.encode(message, buffer);
+        return buffer.flip().slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Queues already encoded messages to be flushed together. The queue keeps a view of the bytes rather than a
+     * copy, so they must not change afterwards; one buffer can be shared by every connection it goes to. This
+     * never blocks on the network, so it is safe to call while holding the room lock.
+     */
+    protected final void write(ByteBuffer bytes) {
+        int result = outbound.offer(bytes.slice());
+        if (result == OutboundQueue.ACCEPTED) {
+            wakeWriter();
+        } else if (result == OutboundQueue.OVERFLOW) {
+            if (outbound.getPolicy() == OutboundQueue.Overflow.COALESCE) {
+                Log.warn(Log.CONNECTION, room.getId(), playerId, "slow reader, coalescing updates");
+                wakeWriter();
+            } else {
+                Log.warn(Log.CONNECTION, room.getId(), playerId, "too slow, disconnecting");
+                closeAsync();
+            }
+        }
+    }
+
+    /** Like {@link #write}, for bytes in a buffer the caller reuses, such as an encoding scratch buffer. */
+    protected final void writeCopy(ByteBuffer bytes) {
+        ByteBuffer copy = ByteBuffer.allocate(bytes.remaining());
+        write(copy.put(bytes).flip());
+    }
+
+    protected void writeLine(String line) {
+        write(ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /** Called by the writer once a coalescing queue has drained. */
+    protected void resyncIfNeeded() {
+        if (outbound.needsResync()) room.resync(this);
+    }
+
+    /** Called with the room locked when the other player has left. */
+    protected void opponentLeft() {
+    }
+
+    protected abstract void wakeWriter();
+
+    protected abstract void closeAsync();
+}
@@ -0,0 +1,34 @@
+package com.tictactoe;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+public final class Protocol {
+    public static final String BINARY_HANDSHAKE = "PROTOCOL BINARY";
+    /** A reconnecting client's first line: {@code RESUME <token> <last sequence seen>}. */
+    public static final String RESUME = "RESUME";
+    /** The server's reply to a successful RESUME, laid out like ASSIGN; the missed events follow in the session's codec. */
+    public static final String RESUMED = "RESUMED";
+    public static final int MAX_FRAME_LENGTH = 1024;
+    public static final int MAX_NAME_LENGTH = 64;
+
+    private Protocol() {
+    }
+
+    /** Reads one line byte by byte so nothing past the newline is buffered, which lets the caller switch framing. */
+    public static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(32);
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            if (line.size() >= MAX_FRAME_LENGTH) throw new IOException("Line too long");
+            line.write(b);
+        }
+        if (b == -1 && line.size() == 0) return null;
+        String text = line.toString(StandardCharsets.UTF_8);
+        return text.endsWith("\r") ? text.substring(0, text.length() - 1) : text;
+    }
+
+    public static String truncateName(String name) {
+        return (name.length() > MAX_NAME_LENGTH) ? name.substring(0, MAX_NAME_LENGTH) : name;
+    }
+}
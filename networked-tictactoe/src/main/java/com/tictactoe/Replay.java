@@ -0,0 +1,232 @@
+package com.tictactoe;
+
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * One recorded game: who played, the variant, every move in order and how long each took. Instances are reused
+ * while recording a room and while reading a replay file, like {@link Message}.
+ *
+ * <p>On disk a game is a varint length followed by the start time, the variant, the outcome and both names, then
+ * the moves. X always moves first and the players alternate, so only cells are stored: two to a byte on boards of
+ * up to 16 cells and one to a byte above that. The delay before each move follows as a varint of milliseconds.
+ */
+public final class Replay {
+    public static final byte X_WINS = StatsStore.X_WINS;
+    public static final byte O_WINS = StatsStore.O_WINS;
+    public static final byte DRAW = StatsStore.DRAW;
+    /** The game ended with a restart or a player leaving before a result. */
+    public static final byte ABANDONED = '-';
+
+    /** Upper bound on an encoded game, names and length prefix included. */
+    static final int MAX_ENCODED_LENGTH = 5 + 10 + 3 + 2 * (2 + 4 * Protocol.MAX_NAME_LENGTH) + 2 + 256 + 256 * 5;
+
+    long startMillis;
+    int boardSize;
+    int winLength;
+    byte outcome;
+    byte[] xName = new byte[0];
+    byte[] oName = new byte[0];
+    int moveCount;
+    int[] cells = new int[16];
+    int[] delays = new int[16];
+    private long lastMillis;
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    public byte getOutcome() {
+        return outcome;
+    }
+
+    public String getXName() {
+        return new String(xName, StandardCharsets.UTF_8);
+    }
+
+    public String getOName() {
+        return new String(oName, StandardCharsets.UTF_8);
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /** The i-th move as row * boardSize + col. */
+    public int getCell(int i) {
+        return cells[i];
+    }
+
+    /** Milliseconds between the previous move (or the start) and the i-th move. */
+    public int getDelayMillis(int i) {
+        return delays[i];
+    }
+
+    void begin(long nowMillis, int boardSize, int winLength) {
+        this.startMillis = nowMillis;
+        this.lastMillis = nowMillis;
+        this.boardSize = boardSize;
+        this.winLength = winLength;
+        this.moveCount = 0;
+    }
+
+    void addMove(int cell, long nowMillis) {
+        if (moveCount == cells.length) {
+            cells = Arrays.copyOf(cells, moveCount * 2);
+            delays = Arrays.copyOf(delays, moveCount * 2);
+        }
+        cells[moveCount] = cell;
+        delays[moveCount] = (int) Math.min(Integer.MAX_VALUE, Math.max(0, nowMillis - lastMillis));
+        lastMillis = nowMillis;
+        moveCount++;
+    }
+
+    /** A snapshot of the game so far, finished with {@code outcome}, that the recording room can keep reusing this one. */
+    Replay finish(byte outcome, byte[] xName, byte[] oName) {
+        Replay copy = new Replay();
+        copy.startMillis = startMillis;
+        copy.boardSize = boardSize;
+        copy.winLength = winLength;
+        copy.outcome = outcome;
+        copy.xName = xName;
+        copy.oName = oName;
+        copy.moveCount = moveCount;
+        copy.cells = Arrays.copyOf(cells, moveCount);
+        copy.delays = Arrays.copyOf(delays, moveCount);
+        return copy;
+    }
+
+    /** Appends the length-prefixed record; {@code scratch} must hold {@link #MAX_ENCODED_LENGTH} bytes. */
+    void encode(ByteBuffer out, ByteBuffer scratch) {
+        scratch.clear();
+        putVarLong(scratch, startMillis);
+        scratch.put((byte) boardSize).put((byte) winLength).put(outcome);
+        putVarInt(scratch, xName.length);
+        scratch.put(xName);
+        putVarInt(scratch, oName.length);
+        scratch.put(oName);
+        putVarInt(scratch, moveCount);
+        if (packsNibbles()) {
+            for (int i = 0; i < moveCount; i += 2) {
+                int high = cells[i] << 4;
+                int low = (i + 1 < moveCount) ? cells[i + 1] : 0;
+                scratch.put((byte) (high | low));
+            }
+        } else {
+            for (int i = 0; i < moveCount; i++) scratch.put((byte) cells[i]);
+        }
+        for (int i = 0; i < moveCount; i++) putVarInt(scratch, delays[i]);
+        scratch.flip();
+        putVarInt(out, scratch.remaining());
+        out.put(scratch);
+    }
+
+    /** Reads the record at the position of {@code in}; throws if it is cut short. */
+    void decode(ByteBuffer in) {
+        startMillis = getVarLong(in);
+        boardSize = in.get() & 0xFF;
+        winLength = in.get() & 0xFF;
+        outcome = in.get();
+        xName = new byte[getVarInt(in)];
+        in.get(xName);
+        oName = new byte[getVarInt(in)];
+        in.get(oName);
+        moveCount = getVarInt(in);
+        if (moveCount > boardSize * boardSize) throw new BufferUnderflowException();
+        if (cells.length < moveCount) {
+            cells = new int[moveCount];
+            delays = new int[moveCount];
+        }
+        if (packsNibbles()) {
+            for (int i = 0; i < moveCount; i += 2) {
+                int packed = in.get() & 0xFF;
+                cells[i] = packed >>> 4;
+                if (i + 1 < moveCount) cells[i + 1] = packed & 0x0F;
+            }
+        } else {
+            for (int i = 0; i < moveCount; i++) cells[i] = in.get() & 0xFF;
+        }
+        for (int i = 0; i < moveCount; i++) delays[i] = getVarInt(in);
+    }
+
+    /**
+     * Replays the game through a fresh engine, handing {@code out} the same START, MOVE, TURN and WIN or DRAW
+     * messages a room would have broadcast. A game decided off the board, by a player running out of time, ends
+     * with the recorded result: a WIN without cells, as the room sent it.
+     */
+    public void play(Message message, Consumer<Message> out) {
+        GameEngine engine = GameEngine.create(boardSize, winLength);
+        int[] winCells = new int[winLength];
+        out.accept(message.set(Message.START));
+        char player = 'X';
+        boolean ended = false;
+        for (int i = 0; i < moveCount; i++) {
+            int row = cells[i] / boardSize;
+            int col = cells[i] % boardSize;
+            int result = engine.play(row, col, player);
+            out.accept(message.set(Message.MOVE).move(row, col, player));
+            char next = (player == 'X') ? 'O' : 'X';
+            out.accept(message.set(Message.TURN).player(next));
+            if (result == GameEngine.WIN) {
+                int count = engine.winningCells(winCells);
+                out.accept(message.set(Message.WIN).player(player).name(player == 'X' ? xName : oName)
+                    .cells(winCells, count, boardSize));
+                ended = true;
+            } else if (result == GameEngine.DRAW) {
+                out.accept(message.set(Message.DRAW));
+                ended = true;
+            }
+            player = next;
+        }
+        if (ended) return;
+        if (outcome == X_WINS || outcome == O_WINS) {
+            char winner = (outcome == X_WINS) ? 'X' : 'O';
+            out.accept(message.set(Message.WIN).player(winner).name(winner == 'X' ? xName : oName)
+                .cells(winCells, 0, boardSize));
+        } else if (outcome == DRAW) {
+            out.accept(message.set(Message.DRAW));
+        }
+    }
+
+    private boolean packsNibbles() {
+        return boardSize * boardSize <= 16;
+    }
+
+    static void putVarInt(ByteBuffer out, int value) {
+        putVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    static void putVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static int getVarInt(ByteBuffer in) {
+        long value = getVarLong(in);
+        if (value > Integer.MAX_VALUE) throw new BufferUnderflowException();
+        return (int) value;
+    }
+
+    static long getVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new BufferUnderflowException();
+    }
+}
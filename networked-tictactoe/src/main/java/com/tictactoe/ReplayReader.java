@@ -0,0 +1,88 @@
+package com.tictactoe;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Streams recorded games out of a replay directory one at a time, oldest first. Segments are mapped read-only and
+ * decoded into a caller-supplied {@link Replay}, so reading any number of games needs only one segment's mapping
+ * and one Replay object.
+ */
+public class ReplayReader implements Closeable {
+    private final Iterator<Path> segments;
+    private FileChannel channel;
+    private ByteBuffer segment;
+
+    public ReplayReader(Path directory) throws IOException {
+        this.segments = segments(directory).iterator();
+    }
+
+    /** Decodes the next game into {@code replay}; returns false when every segment has been read. */
+    public boolean next(Replay replay) throws IOException {
+        while (true) {
+            if (segment != null && segment.remaining() > 0) {
+                int start = segment.position();
+                try {
+                    int length = Replay.getVarInt(segment);
+                    if (length > 0 && length <= segment.remaining()) {
+                        ByteBuffer record = segment.slice(segment.position(), length);
+                        segment.position(segment.position() + length);
+                        replay.decode(record);
+                        return true;
+                    }
+                } catch (BufferUnderflowException e) {
+                    // a game cut short by a crash ends the segment
+                }
+                segment.position(start);
+                segment = null;
+            }
+            if (!nextSegment()) return false;
+        }
+    }
+
+    private boolean nextSegment() throws IOException {
+        closeSegment();
+        while (segments.hasNext()) {
+            Path path = segments.next();
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (segment.remaining() >= 4 && segment.getInt() == ReplayRecorder.SEGMENT_MAGIC) return true;
+            Log.warn(Log.SERVER, 0, 0, "skipping " + path + ": not a replay segment");
+            closeSegment();
+        }
+        return false;
+    }
+
+    private void closeSegment() throws IOException {
+        segment = null;
+        if (channel != null) channel.close();
+        channel = null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeSegment();
+    }
+
+    static List<Path> segments(Path directory) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        if (!Files.isDirectory(directory)) return paths;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "replay-*.seg")) {
+            for (Path file : files) paths.add(file);
+        }
+        paths.sort(Comparator.comparingInt(ReplayReader::segmentNumber));
+        return paths;
+    }
+
+    static int segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring("replay-".length(), name.length() - ".seg".length()));
+    }
+
+    static Path segmentPath(Path directory, int number) {
+        return directory.resolve(String.format("replay-%06d.seg", number));
+    }
+}
@@ -0,0 +1,105 @@
+package com.tictactoe;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * Appends finished games to a directory of memory-mapped segment files. Rooms hand over a {@link Replay} and carry
+ * on; a writer thread encodes whatever arrived since it last woke up. A segment that cannot fit the next game is
+ * trimmed to its used length and the next one is started, so readers can process old segments while new games
+ * keep arriving.
+ */
+public class ReplayRecorder {
+    static final int SEGMENT_MAGIC = 0x54545250;
+    private static final long WRITE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final Queue<Replay> pending = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer scratch = ByteBuffer.allocate(Replay.MAX_ENCODED_LENGTH);
+    private final Thread thread;
+    private int segmentNumber;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private volatile boolean closed = false;
+
+    public ReplayRecorder(Path directory, int segmentBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = Math.max(Replay.MAX_ENCODED_LENGTH * 4, segmentBytes);
+        Files.createDirectories(directory);
+        List<Path> existing = ReplayReader.segments(directory);
+        segmentNumber = existing.isEmpty() ? 0 : ReplayReader.segmentNumber(existing.get(existing.size() - 1));
+        this.thread = Thread.ofPlatform().daemon().name("replay-writer").unstarted(this::run);
+    }
+
+    public void start() {
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+    }
+
+    /** Queues a finished game; never blocks. */
+    public void record(Replay replay) {
+        if (!closed) pending.offer(replay);
+    }
+
+    /** Writes whatever is still queued and trims the last segment. Called once on shutdown. */
+    public void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            LockSupport.parkNanos(WRITE_INTERVAL_NANOS);
+            write();
+        }
+        write();
+        try {
+            closeSegment();
+        } catch (IOException e) {
+            Log.warn(Log.SERVER, 0, 0, "replay segment close failed: " + e);
+        }
+    }
+
+    private void write() {
+        Replay replay;
+        try {
+            while ((replay = pending.poll()) != null) {
+                if (segment == null || segment.remaining() < Replay.MAX_ENCODED_LENGTH) {
+                    closeSegment();
+                    openSegment();
+                }
+                replay.encode(segment, scratch);
+            }
+        } catch (IOException e) {
+            Log.error(Log.SERVER, 0, 0, "replay write failed: " + e);
+        }
+    }
+
+    private void openSegment() throws IOException {
+        segmentNumber++;
+        channel = FileChannel.open(ReplayReader.segmentPath(directory, segmentNumber),
+            StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        segment.putInt(SEGMENT_MAGIC);
+    }
+
+    private void closeSegment() throws IOException {
+        if (segment == null) return;
+        int used = segment.position();
+        segment.force();
+        segment = null;
+        channel.truncate(used);
+        channel.close();
+    }
+}
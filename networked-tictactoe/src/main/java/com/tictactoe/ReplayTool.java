@@ -0,0 +1,76 @@
+package com.tictactoe;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.*;
+
+/**
+ * Reads a replay directory. Without {@code --game} it streams every recorded game once and prints totals; with
+ * {@code --game=N} it prints the N-th game (counting from 1) as the protocol lines a client would have received.
+ */
+public class ReplayTool {
+    public static void main(String[] args) throws IOException {
+        ServerOptions options = new ServerOptions(args);
+        Path directory = Paths.get(options.get("dir", "replays"));
+        int game = options.getInt("game", 0);
+        if (game > 0) dump(directory, game);
+        else summarize(directory);
+    }
+
+    private static void summarize(Path directory) throws IOException {
+        long start = System.nanoTime();
+        long games = 0;
+        long moves = 0;
+        long thinkMillis = 0;
+        long[] outcomes = new long[128];
+        long[] openings = new long[256];
+        Replay replay = new Replay();
+        try (ReplayReader reader = new ReplayReader(directory)) {
+            while (reader.next(replay)) {
+                games++;
+                outcomes[replay.getOutcome() & 0x7F]++;
+                moves += replay.getMoveCount();
+                for (int i = 0; i < replay.getMoveCount(); i++) thinkMillis += replay.getDelayMillis(i);
+                if (replay.getMoveCount() > 0) openings[replay.getCell(0)]++;
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int opening = 0;
+        for (int i = 1; i < openings.length; i++) {
+            if (openings[i] > openings[opening]) opening = i;
+        }
+
+        System.out.printf("Games: %d (read at %.0f/s)%n", games, games / seconds);
+        System.out.printf("X wins: %d, O wins: %d, draws: %d, abandoned: %d%n", outcomes[Replay.X_WINS],
+            outcomes[Replay.O_WINS], outcomes[Replay.DRAW], outcomes[Replay.ABANDONED]);
+        if (games > 0) {
+            System.out.printf("Moves per game: %.1f, average move time: %.0f ms%n", (double) moves / games,
+                (moves == 0) ? 0.0 : (double) thinkMillis / moves);
+            System.out.println("Most common first move: cell " + opening + " (" + openings[opening] + " games)");
+        }
+    }
+
+    private static void dump(Path directory, int game) throws IOException {
+        Replay replay = new Replay();
+        try (ReplayReader reader = new ReplayReader(directory)) {
+            for (int i = 0; i < game; i++) {
+                if (!reader.next(replay)) {
+                    System.err.println("Only " + i + " games recorded");
+                    return;
+                }
+            }
+        }
+        System.out.println("# " + Instant.ofEpochMilli(replay.getStartMillis()) + " " + replay.getXName() +
+            " (X) vs " + replay.getOName() + " (O), " + replay.getBoardSize() + "x" + replay.getBoardSize() +
+            ", " + replay.getWinLength() + " in a row");
+        ByteBuffer line = ByteBuffer.allocate(Protocol.MAX_FRAME_LENGTH);
+        replay.play(new Message(), message -> {
+            line.clear();
+            TextCodec.INSTANCE.encode(message, line);
+            System.out.print(new String(line.array(), 0, line.position(), StandardCharsets.UTF_8));
+        });
+        if (replay.getOutcome() == Replay.ABANDONED) System.out.println("# abandoned");
+    }
+}
@@ -0,0 +1,240 @@
+package com.tictactoe;
+
+import java.nio.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+public class RoomManager {
+    private final int boardSize;
+    private final int winLength;
+    private final AtomicInteger nextRoomId = new AtomicInteger(1);
+    private final Map<Integer, GameRoom> rooms = new ConcurrentHashMap<>();
+    private ForkJoinPool aiPool;
+    private long aiBudgetNanos;
+    private StatsStore stats;
+    private ReplayRecorder replays;
+    private final Map<Long, PlayerSession> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom tokens = new SecureRandom();
+    private TimerWheel timers;
+    private long resumeGraceMillis;
+    private int resumeLogBytes;
+    private long heartbeatMillis;
+    private int idleHeartbeats;
+    private long turnMillis;
+    private HashRing ring;
+    private String self;
+    private Lobby lobby;
+
+    public RoomManager(int boardSize, int winLength) {
+        GameEngine.validate(boardSize, winLength);
+        this.boardSize = boardSize;
+        this.winLength = winLength;
+    }
+
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    /**
+     * Joins a cluster: this server only creates rooms whose ids {@code ring} assigns to {@code self}, so a
+     * {@link Router} can send anyone resuming a game to the node that holds it.
+     */
+    public void enableCluster(HashRing ring, String self) {
+        if (!ring.nodes().contains(self)) throw new IllegalArgumentException(self + " is not in the cluster");
+        this.ring = ring;
+        this.self = self;
+    }
+
+    /** Where a player goes back to when their room falls through before the game starts. */
+    void setLobby(Lobby lobby) {
+        this.lobby = lobby;
+    }
+
+    /** Sends a player whose opponent left before the game started back to the lobby, still holding their seat. */
+    void requeue(PlayerSession player) {
+        player.release();
+        if (lobby != null) lobby.enqueue(player);
+    }
+
+    /** Seats every new player against a server-hosted {@link AiPlayer} instead of another connection. */
+    public void enableAi(int threads, long budgetMillis) {
+        aiPool = AiPlayer.newPool(threads);
+        aiBudgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+    }
+
+    /** Records every finished game between named players in {@code stats}. */
+    public void enableStats(StatsStore stats) {
+        this.stats = stats;
+    }
+
+    void recordResult(byte[] xName, byte[] oName, byte outcome) {
+        if (stats != null && xName.length > 0 && oName.length > 0) stats.record(xName, oName, outcome);
+    }
+
+    /** Records every game played on this server with {@code replays}. */
+    public void enableReplays(ReplayRecorder replays) {
+        this.replays = replays;
+    }
+
+    boolean isRecordingReplays() {
+        return replays != null;
+    }
+
+    void recordReplay(Replay replay) {
+        replays.record(replay);
+    }
+
+    /**
+     * Lets a player whose connection drops resume within {@code graceMillis}. Each room keeps up to
+     * {@code logBytes} of its latest events per codec to send back what they missed.
+     */
+    public void enableResume(TimerWheel timers, long graceMillis, int logBytes) {
+        this.timers = timers;
+        resumeGraceMillis = graceMillis;
+        resumeLogBytes = logBytes;
+    }
+
+    boolean isResumeEnabled() {
+        return resumeGraceMillis > 0;
+    }
+
+    /**
+     * Checks every seated connection once per {@code intervalMillis}. One that has sent nothing since the last check
+     * is sent a PING, which clients answer with PONG; one that stays silent for {@code idleMillis} is closed.
+     */
+    public void enableHeartbeats(TimerWheel timers, long intervalMillis, long idleMillis) {
+        this.timers = timers;
+        heartbeatMillis = intervalMillis;
+        idleHeartbeats = (int) Math.max(1, idleMillis / intervalMillis);
+    }
+
+    /** Forfeits the game of a player who has not moved within {@code millis} of their turn starting. */
+    public void enableTurnClock(TimerWheel timers, long millis) {
+        this.timers = timers;
+        turnMillis = millis;
+    }
+
+    long getTurnMillis() {
+        return turnMillis;
+    }
+
+    TimerWheel getTimers() {
+        return timers;
+    }
+
+    /** Starts the heartbeat of a connection that has just been seated. */
+    void watch(PlayerSession player) {
+        if (heartbeatMillis > 0 && player.isRemote()) scheduleHeartbeat(player);
+    }
+
+    private void scheduleHeartbeat(PlayerSession player) {
+        player.heartbeat = timers.schedule(() -> {
+            if (player.isOpen() && player.checkLiveness(idleHeartbeats)) scheduleHeartbeat(player);
+        }, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    int getResumeLogBytes() {
+        return resumeLogBytes;
+    }
+
+    /** A new token, random apart from the room id in its top half, which is all a router needs to route a resume. */
+    long openSession(PlayerSession player) {
+        long token;
+        do {
+            token = (long) player.roomId() << 32 | (tokens.nextInt() & 0xFFFFFFFFL);
+        } while (token == 0 || sessions.putIfAbsent(token, player) != null);
+        return token;
+    }
+
+    /** Registers the seat of a game restored from a checkpoint, so its player can resume it. */
+    void restoreSession(PlayerSession seat) {
+        sessions.put(seat.sessionToken, seat);
+    }
+
+    static int roomOfToken(long token) {
+        return (int) (token >>> 32);
+    }
+
+    void moveSession(PlayerSession old, PlayerSession fresh) {
+        sessions.replace(old.sessionToken, old, fresh);
+    }
+
+    void closeSession(PlayerSession player) {
+        sessions.remove(player.sessionToken, player);
+    }
+
+    /** Gives up a suspended player's seat once the grace period has passed without a resume. */
+    void suspend(PlayerSession player) {
+        GameRoom room = player.room;
+        timers.schedule(() -> room.expire(player), resumeGraceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    boolean resume(PlayerSession player, long token, int lastSequence) {
+        PlayerSession old = sessions.get(token);
+        return old != null && old.room.resume(old, player, lastSequence);
+    }
+
+    public boolean isAiEnabled() {
+        return aiPool != null;
+    }
+
+    void seatAgainstAi(PlayerSession player) {
+        GameRoom room = createRoom();
+        player.seat(room, room.reserveSeat(player));
+        watch(player);
+        room.join(new AiPlayer(room, room.reserveSeat(), aiPool, aiBudgetNanos));
+    }
+
+    /**
+     * Brings back a game from a {@link GameRoom#checkpoint}. New rooms are numbered after it, so its id, which its
+     * players' session tokens carry, stays its own.
+     */
+    GameRoom restoreRoom(ByteBuffer checkpoint) {
+        int id = checkpoint.getInt();
+        GameRoom room = new GameRoom(id, GameEngine.create(boardSize, winLength), this);
+        room.restore(checkpoint);
+        rooms.put(id, room);
+        if (ring != null && !ring.owner(id).equals(self)) {
+            Log.warn(Log.ROOM, id, 0, "restored, but the cluster now gives this room to " + ring.owner(id) +
+                ", so its players cannot resume it through the router");
+        }
+        nextRoomId.accumulateAndGet(id + 1, Math::max);
+        return room;
+    }
+
+    GameRoom createRoom() {
+        GameRoom room = new GameRoom(nextRoomId(), GameEngine.create(boardSize, winLength), this);
+        rooms.put(room.getId(), room);
+        return room;
+    }
+
+    private int nextRoomId() {
+        int id;
+        do {
+            id = nextRoomId.getAndIncrement();
+        } while (ring != null && !ring.owner(id).equals(self));
+        return id;
+    }
+
+    public GameRoom getRoom(int id) {
+        return rooms.get(id);
+    }
+
+    public Collection<GameRoom> getRooms() {
+        return rooms.values();
+    }
+
+    public int getActiveRoomCount() {
+        return rooms.size();
+    }
+
+    void removeRoom(GameRoom room) {
+        rooms.remove(room.getId(), room);
+    }
+}
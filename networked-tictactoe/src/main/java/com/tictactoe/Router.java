@@ -0,0 +1,182 @@
+package com.tictactoe;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * The front of a cluster of servers started with the same {@code --cluster} list. Each client connection is
+ * forwarded byte for byte to one node, chosen on the {@link HashRing}: new players two at a time, so both halves
+ * of a pairing reach the same lobby, and a {@code RESUME} by the room id inside its token, which is the node that
+ * created that room.
+ *
+ * <p>A node that refuses a connection is skipped for {@code --retry-ms}, and its keys go to the next node round the
+ * ring; every other key keeps its node. Games on a node that goes down are lost with it.
+ *
+ * <p>The node list is fixed for the life of the cluster. Rooms never move between nodes, so a router or node started
+ * with a different list would send the {@code RESUME} of some running games to a node that never had them.
+ */
+public class Router {
+    private static final int PEEK_BYTES = 64;
+    private static final byte[] RESUME_PREFIX = (Protocol.RESUME + " ").getBytes(StandardCharsets.US_ASCII);
+
+    private final HashRing ring;
+    private final int peekMillis;
+    private final int connectTimeoutMillis;
+    private final long retryNanos;
+    private final Map<String, Long> downUntil = new ConcurrentHashMap<>();
+    private final AtomicLong arrivals = new AtomicLong();
+
+    public Router(HashRing ring, int peekMillis, int connectTimeoutMillis, long retryMillis) {
+        this.ring = ring;
+        this.peekMillis = peekMillis;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.retryNanos = TimeUnit.MILLISECONDS.toNanos(retryMillis);
+    }
+
+    public static void main(String[] args) throws IOException {
+        ServerOptions options = new ServerOptions(args);
+        Log.configure(options.get("log-level", "info"), options.get("log-sample", ""));
+        HashRing ring = HashRing.parse(options.get("cluster", ""));
+        int port = options.getInt("port", 12345);
+        Router router = new Router(ring, options.getInt("peek-ms", 50), options.getInt("connect-timeout-ms", 1000),
+            options.getInt("retry-ms", 2000));
+        System.out.println("Router on port " + port + " for " + ring.nodes());
+        router.serve(port);
+    }
+
+    public void serve(int port) throws IOException {
+        try (ServerSocket server = new ServerSocket(port, NioServer.BACKLOG)) {
+            while (true) {
+                Socket client = server.accept();
+                client.setTcpNoDelay(true);
+                Thread.ofVirtual().name("route-", client.getPort()).start(() -> forward(client));
+            }
+        }
+    }
+
+    private void forward(Socket client) {
+        try (client) {
+            byte[] first = new byte[PEEK_BYTES];
+            int length = peek(client, first);
+            long key = routingKey(new String(first, 0, length, StandardCharsets.UTF_8));
+            try (Socket node = connect(key)) {
+                if (node == null) {
+                    Log.warn(Log.SERVER, 0, 0, "no node reachable, dropping connection");
+                    return;
+                }
+                node.getOutputStream().write(first, 0, length);
+                Thread upstream = Thread.ofVirtual().start(() -> pipe(client, node));
+                pipe(node, client);
+                upstream.join();
+            }
+        } catch (IOException | InterruptedException e) {
+            // the client or the node went away
+        }
+    }
+
+    /**
+     * Reads what the client sends straight away, without waiting for a greeting. That is a whole {@code RESUME}
+     * line when the client is resuming and nothing at all from a new player, who first waits for {@code ASSIGN}.
+     * Anything else is forwarded as soon as its first bytes show it is not a {@code RESUME}.
+     */
+    private int peek(Socket client, byte[] buffer) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(peekMillis);
+        InputStream in = client.getInputStream();
+        int length = 0;
+        try {
+            while (length < buffer.length && (length == 0 || buffer[length - 1] != '\n')) {
+                long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (left <= 0) break;
+                client.setSoTimeout((int) left);
+                int n = in.read(buffer, length, buffer.length - length);
+                if (n < 0) throw new EOFException();
+                length += n;
+                if (!mayBeResume(buffer, length)) break;
+            }
+        } catch (SocketTimeoutException e) {
+            // a new player; they speak once the server has greeted them
+        }
+        client.setSoTimeout(0);
+        return length;
+    }
+
+    private static boolean mayBeResume(byte[] buffer, int length) {
+        for (int i = 0; i < Math.min(length, RESUME_PREFIX.length); i++) {
+            if (buffer[i] != RESUME_PREFIX[i]) return false;
+        }
+        return true;
+    }
+
+    private long routingKey(String firstLine) {
+        if (firstLine.startsWith(Protocol.RESUME + " ")) {
+            String[] parts = firstLine.trim().split(" ");
+            try {
+                return RoomManager.roomOfToken(Long.parseUnsignedLong(parts[1], 16));
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                // not a token; the node will refuse it
+            }
+        }
+        return arrivals.getAndIncrement() / 2;
+    }
+
+    /** Connects to the first node in {@code key}'s preference order that answers. Null if none does. */
+    private Socket connect(long key) {
+        List<String> skipped = new ArrayList<>();
+        for (String node : ring.preference(key)) {
+            Long until = downUntil.get(node);
+            if (until != null && System.nanoTime() - until < 0) {
+                skipped.add(node);
+                continue;
+            }
+            Socket socket = connect(node);
+            if (socket != null) return socket;
+        }
+        // nothing that looked up answered; rather than give up, try the nodes that failed recently
+        for (String node : skipped) {
+            Socket socket = connect(node);
+            if (socket != null) return socket;
+        }
+        return null;
+    }
+
+    private Socket connect(String node) {
+        Socket socket = new Socket();
+        try {
+            int colon = node.lastIndexOf(':');
+            socket.connect(new InetSocketAddress(node.substring(0, colon), Integer.parseInt(node.substring(colon + 1))),
+                connectTimeoutMillis);
+            socket.setTcpNoDelay(true);
+            if (downUntil.remove(node) != null) Log.info(Log.SERVER, 0, 0, node + " is back");
+            return socket;
+        } catch (IOException e) {
+            close(socket);
+            if (downUntil.put(node, System.nanoTime() + retryNanos) == null) {
+                Log.warn(Log.SERVER, 0, 0, node + " is down: " + e.getMessage());
+            }
+            return null;
+        }
+    }
+
+    /** Copies one direction until it ends, then passes the end on; on an error both sockets are closed. */
+    private static void pipe(Socket from, Socket to) {
+        try {
+            from.getInputStream().transferTo(to.getOutputStream());
+            to.shutdownOutput();
+        } catch (IOException e) {
+            close(from);
+            close(to);
+        }
+    }
+
+    private static void close(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // already closed
+        }
+    }
+}
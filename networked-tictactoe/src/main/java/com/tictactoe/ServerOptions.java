@@ -0,0 +1,30 @@
+package com.tictactoe;
+
+import java.util.*;
+
+public class ServerOptions {
+    private final Map<String, String> values = new HashMap<>();
+
+    public ServerOptions(String[] args) {
+        for (String arg : args) {
+            if (!arg.startsWith("--")) continue;
+            int eq = arg.indexOf('=');
+            if (eq < 0) values.put(arg.substring(2), "true");
+            else values.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+    }
+
+    public String get(String key, String defaultValue) {
+        return values.getOrDefault(key, defaultValue);
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = values.get(key);
+        return (value == null) ? defaultValue : Integer.parseInt(value);
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = values.get(key);
+        return (value == null) ? defaultValue : Boolean.parseBoolean(value);
+    }
+}
@@ -0,0 +1,153 @@
+package com.tictactoe;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.stream.*;
+
+/**
+ * Plays engine-versus-engine games offline, straight against {@link GameEngine} with no rooms or sockets, to check
+ * rule changes and compare players. Games are played in chunks across a fork/join pool. Each worker thread keeps
+ * one board and reuses it for every game it plays, and adds a chunk's results to the shared totals once.
+ *
+ * <p>A chunk's random moves come from its own seed, so a run gives the same totals with any number of threads.
+ */
+public class Simulator {
+    static final int RANDOM = 0;
+    static final int PERFECT = 1;
+    static final int SEARCH = 2;
+    private static final String[] PLAYER_NAMES = {"random", "perfect", "search"};
+    private static final int CHUNK_GAMES = 1 << 14;
+
+    private final int size;
+    private final int winLength;
+    private final int[] players;
+    private final long searchNanos;
+    private final long seed;
+    private final ThreadLocal<Table> tables;
+    private final AlphaBeta search;
+    private final LongAdder xWins = new LongAdder();
+    private final LongAdder oWins = new LongAdder();
+    private final LongAdder draws = new LongAdder();
+    private final LongAdder moves = new LongAdder();
+
+    public Simulator(int size, int winLength, int xPlayer, int oPlayer, long searchMillis, long seed) {
+        GameEngine.validate(size, winLength);
+        if ((xPlayer == PERFECT || oPlayer == PERFECT) && (size != 3 || winLength != 3)) {
+            throw new IllegalArgumentException("The perfect player only knows the 3x3 board");
+        }
+        this.size = size;
+        this.winLength = winLength;
+        this.players = new int[] {xPlayer, oPlayer};
+        this.searchNanos = TimeUnit.MILLISECONDS.toNanos(searchMillis);
+        this.seed = seed;
+        this.tables = ThreadLocal.withInitial(Table::new);
+        // one search for every worker, so they share its transposition table
+        this.search = (xPlayer == SEARCH || oPlayer == SEARCH) ? new AlphaBeta(size, winLength) : null;
+    }
+
+    public static void main(String[] args) {
+        ServerOptions options = new ServerOptions(args);
+        int size = options.getInt("board", 3);
+        long games = Long.parseLong(options.get("games", "10000000"));
+        int threads = options.getInt("threads", Runtime.getRuntime().availableProcessors());
+        Simulator simulator = new Simulator(size, options.getInt("win", Math.min(size, 5)),
+            player(options.get("x", "random")), player(options.get("o", "random")),
+            options.getInt("search-ms", 10), Long.parseLong(options.get("seed", "1")));
+
+        ForkJoinPool pool = AiPlayer.newPool(threads);
+        long start = System.nanoTime();
+        simulator.run(games, pool);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        simulator.report(games, seconds, pool.getParallelism());
+    }
+
+    private static int player(String name) {
+        for (int i = 0; i < PLAYER_NAMES.length; i++) {
+            if (PLAYER_NAMES[i].equals(name)) return i;
+        }
+        throw new IllegalArgumentException("Unknown player " + name + ", expected one of " +
+            String.join(", ", PLAYER_NAMES));
+    }
+
+    /** Plays {@code games} games on {@code pool} and waits for all of them. */
+    public void run(long games, ForkJoinPool pool) {
+        long chunks = (games + CHUNK_GAMES - 1) / CHUNK_GAMES;
+        pool.submit(() -> LongStream.range(0, chunks).parallel().forEach(chunk ->
+            tables.get().playChunk(chunk, Math.min(CHUNK_GAMES, games - chunk * CHUNK_GAMES)))).join();
+    }
+
+    private void report(long games, double seconds, int threads) {
+        System.out.printf("%s (X) vs %s (O), %dx%d, %d in a row%n", PLAYER_NAMES[players[0]],
+            PLAYER_NAMES[players[1]], size, size, winLength);
+        System.out.printf("Games: %d in %.2f s (%.0f/s on %d threads)%n", games, seconds, games / seconds, threads);
+        System.out.printf("X wins: %d (%.2f%%), O wins: %d (%.2f%%), draws: %d (%.2f%%)%n",
+            xWins.sum(), 100.0 * xWins.sum() / games, oWins.sum(), 100.0 * oWins.sum() / games,
+            draws.sum(), 100.0 * draws.sum() / games);
+        System.out.printf("Moves per game: %.2f%n", (double) moves.sum() / games);
+    }
+
+    /** One worker's board and scratch space, reused for every game the worker plays. */
+    private final class Table {
+        private final GameEngine engine = GameEngine.create(size, winLength);
+        private final int cells = size * size;
+        private final int[] free = new int[cells];
+        private final int[] position = new int[cells];
+        private final byte[] searchBoard = new byte[cells];
+        private SplittableRandom random;
+
+        void playChunk(long chunk, long games) {
+            random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + chunk);
+            long x = 0;
+            long o = 0;
+            long drawn = 0;
+            long played = 0;
+            for (long i = 0; i < games; i++) {
+                int result = playGame();
+                played += engine.moveCount();
+                if (result == GameEngine.DRAW) drawn++;
+                else if ((engine.moveCount() & 1) == 1) x++;
+                else o++;
+            }
+            xWins.add(x);
+            oWins.add(o);
+            draws.add(drawn);
+            moves.add(played);
+        }
+
+        /** Plays one game from an empty board and returns WIN for whoever moved last, or DRAW. */
+        private int playGame() {
+            engine.reset();
+            for (int i = 0; i < cells; i++) {
+                free[i] = i;
+                position[i] = 0;
+            }
+            int open = cells;
+            for (int turn = 0; ; turn ^= 1) {
+                int cell = chooseMove(players[turn], turn + 1, open);
+                open--;
+                for (int i = 0; i <= open; i++) {
+                    if (free[i] == cell) {
+                        free[i] = free[open];
+                        break;
+                    }
+                }
+                position[cell] = turn + 1;
+                int result = engine.play(cell / size, cell % size, (turn == 0) ? 'X' : 'O');
+                if (result != GameEngine.IN_PROGRESS) return result;
+            }
+        }
+
+        private int chooseMove(int player, int side, int open) {
+            switch (player) {
+                case PERFECT:
+                    return PerfectPlay.bestMove(position);
+                case SEARCH:
+                    for (int i = 0; i < cells; i++) searchBoard[i] = (byte) position[i];
+                    return search.bestMove(searchBoard, side, searchNanos);
+                default:
+                    return free[random.nextInt(open)];
+            }
+        }
+    }
+}
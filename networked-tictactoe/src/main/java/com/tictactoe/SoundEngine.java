@@ -0,0 +1,112 @@
+package com.tictactoe;
+
+import javax.sound.sampled.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Plays the client's sounds from one background thread, so neither startup nor the EDT waits on audio. Each file is
+ * decoded to PCM once, when {@link #start()} is called, and kept. Every sound can play on a few mixer lines at once,
+ * so a quick run of moves overlaps instead of one cutting the next off.
+ */
+final class SoundEngine {
+    private final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+    private final Map<String, Sound> sounds = new ConcurrentHashMap<>();
+    private final int voices;
+    private final Thread thread;
+
+    /** One decoded file and the lines it is playing on. Only the engine's thread touches the lines. */
+    static final class Sound {
+        private final String path;
+        private final List<Clip> lines = new ArrayList<>();
+        private AudioFormat format;
+        private byte[] pcm;
+        private int next = 0;
+
+        private Sound(String path) {
+            this.path = path;
+        }
+    }
+
+    /** {@code voices} is how many lines one sound may play on at the same time. */
+    SoundEngine(int voices) {
+        this.voices = Math.max(1, voices);
+        this.thread = Thread.ofPlatform().daemon().name("sound").unstarted(this::run);
+    }
+
+    /** The sound for a classpath resource. It is decoded once the engine starts; until then playing it does nothing. */
+    Sound sound(String path) {
+        return sounds.computeIfAbsent(path, Sound::new);
+    }
+
+    /** Decodes every sound asked for so far, then plays whatever has been requested in the meantime. */
+    void start() {
+        for (Sound sound : sounds.values()) tasks.offer(() -> decode(sound));
+        thread.start();
+    }
+
+    void play(Sound sound) {
+        if (sound != null) tasks.offer(() -> open(sound, false));
+    }
+
+    void loop(Sound sound) {
+        if (sound != null) tasks.offer(() -> open(sound, true));
+    }
+
+    private void run() {
+        try {
+            while (true) tasks.take().run();
+        } catch (InterruptedException e) {
+            // the client is exiting
+        }
+    }
+
+    private void decode(Sound sound) {
+        InputStream resource = getClass().getResourceAsStream(sound.path);
+        if (resource == null) return;
+        try (AudioInputStream encoded = AudioSystem.getAudioInputStream(new BufferedInputStream(resource))) {
+            AudioFormat source = encoded.getFormat();
+            AudioFormat pcmFormat = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, source.getSampleRate(), 16,
+                source.getChannels(), source.getChannels() * 2, source.getSampleRate(), false);
+            AudioInputStream decoded = source.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED) ? encoded
+                : AudioSystem.getAudioInputStream(pcmFormat, encoded);
+            sound.pcm = decoded.readAllBytes();
+            sound.format = decoded.getFormat();
+        } catch (IOException | UnsupportedAudioFileException | IllegalArgumentException e) {
+            System.err.println("Cannot load sound: " + sound.path);
+        }
+    }
+
+    /** Starts the sound on a line that is not busy, opening a new one up to the limit, or else takes its lines in turn. */
+    private void open(Sound sound, boolean loop) {
+        if (sound.pcm == null) return;
+        Clip line = null;
+        for (Clip clip : sound.lines) {
+            if (!clip.isActive()) {
+                line = clip;
+                break;
+            }
+        }
+        if (line == null && sound.lines.size() < voices) {
+            Clip clip = null;
+            try {
+                clip = AudioSystem.getClip();
+                clip.open(sound.format, sound.pcm, 0, sound.pcm.length);
+                sound.lines.add(clip);
+                line = clip;
+            } catch (LineUnavailableException | IllegalArgumentException e) {
+                // no free line on the mixer: reuse one of ours below
+                if (clip != null) clip.close();
+            }
+        }
+        if (line == null) {
+            if (sound.lines.isEmpty()) return;
+            line = sound.lines.get(sound.next++ % sound.lines.size());
+            line.stop();
+        }
+        line.setFramePosition(0);
+        if (loop) line.loop(Clip.LOOP_CONTINUOUSLY);
+        else line.start();
+    }
+}
@@ -0,0 +1,220 @@
+package com.tictactoe;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A read-only connection that watches one room in the text protocol. It says {@code WATCH [room]} once and from
+ * then on only receives; anything else it sends is ignored. It may instead ask for a recorded game with
+ * {@code REPLAY <game>}, which it is sent in one go before the connection is closed. A spectator who falls too far behind skips ahead to the
+ * room's current state instead of holding an ever-growing backlog.
+ */
+final class Spectator implements EventLoop.Handler {
+    private static final int QUEUE_LIMIT = 256 * 1024;
+    private static final int GATHER = 64;
+
+    private final SocketChannel channel;
+    private final SpectatorServer server;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(256);
+    private final Deque<ByteBuffer> pending = new ArrayDeque<>();
+    /** The slab each pending buffer is a view of, in step with {@link #pending}; NONE for a buffer of its own. */
+    private final Deque<Object> sources = new ArrayDeque<>();
+    private final ByteBuffer[] gather = new ByteBuffer[GATHER];
+    private static final Object NONE = new Object();
+
+    private EventLoop loop;
+    private SelectionKey key;
+    private GameRoom room;
+    private SpectatorGroup group;
+    private int pendingBytes = 0;
+    /** Set once a replay has been queued; the connection closes when it is written. */
+    private boolean finishing = false;
+    private boolean closed = false;
+
+    Spectator(SocketChannel channel, EventLoop loop, SpectatorServer server) {
+        this.channel = channel;
+        this.loop = loop;
+        this.server = server;
+    }
+
+    void open() {
+        try {
+            key = loop.register(channel, SelectionKey.OP_READ, this);
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    @Override
+    public void handle(SelectionKey key) throws IOException {
+        if (key.isReadable()) read();
+        if (key.isValid() && key.isWritable()) flush();
+    }
+
+    @Override
+    public void exceptionCaught(Exception e) {
+        close();
+    }
+
+    private void read() throws IOException {
+        if (channel.read(readBuffer) < 0) {
+            close();
+            return;
+        }
+        if (room != null || finishing) {
+            readBuffer.clear();
+            return;
+        }
+        for (int i = 0; i < readBuffer.position(); i++) {
+            if (readBuffer.get(i) != '\n') continue;
+            String line = new String(readBuffer.array(), 0, i, StandardCharsets.UTF_8).trim();
+            readBuffer.clear();
+            key.interestOps(0);
+            if (line.startsWith("REPLAY")) {
+                if (!server.replay(this, line)) close();
+                return;
+            }
+            room = server.watch(this, line);
+            if (room == null) close();
+            return;
+        }
+        if (!readBuffer.hasRemaining()) throw new IOException("Request too long");
+    }
+
+    /** Takes the connection over to the room's fan-out loop; returns false if it has gone away meanwhile. */
+    boolean moveTo(SpectatorGroup group, EventLoop groupLoop) {
+        if (closed) return false;
+        this.group = group;
+        if (groupLoop != loop) {
+            key.cancel();
+            loop = groupLoop;
+            try {
+                key = loop.register(channel, SelectionKey.OP_READ, this);
+            } catch (IOException e) {
+                close();
+                return false;
+            }
+        } else {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+        return true;
+    }
+
+    /** Drops whatever is still queued, except a partly written head, and starts over from {@code state}. */
+    void restart(ByteBuffer state) {
+        if (closed) return;
+        skipBacklog();
+        enqueue(state, NONE);
+    }
+
+    /** Sends a replay and hangs up once it is written; with nothing to send, hangs up at once. */
+    void finish(ByteBuffer lines) {
+        if (closed) return;
+        if (lines == null) {
+            close();
+            return;
+        }
+        finishing = true;
+        enqueue(lines, NONE);
+        flush();
+    }
+
+    /** Queues a view of part of {@code slab}, which this spectator holds on to until it has written it. */
+    void queue(ByteBuffer events, SpectatorGroup.Slab slab) {
+        if (closed) return;
+        if (pendingBytes + events.remaining() > QUEUE_LIMIT) {
+            // the group's history already includes these events
+            restart(group.resync());
+            return;
+        }
+        slab.hold();
+        enqueue(events.duplicate(), slab);
+    }
+
+    private void enqueue(ByteBuffer buffer, Object source) {
+        pending.add(buffer);
+        sources.add(source);
+        pendingBytes += buffer.limit();
+    }
+
+    private void dequeue() {
+        pendingBytes -= pending.poll().limit();
+        release(sources.poll());
+    }
+
+    private void skipBacklog() {
+        ByteBuffer head = pending.peek();
+        Object headSource = sources.peek();
+        boolean partlyWritten = head != null && head.position() > 0;
+        if (partlyWritten) {
+            pending.poll();
+            sources.poll();
+        }
+        releaseAll();
+        if (partlyWritten) enqueue(head, headSource);
+    }
+
+    private void releaseAll() {
+        for (Object source : sources) release(source);
+        pending.clear();
+        sources.clear();
+        pendingBytes = 0;
+    }
+
+    private static void release(Object source) {
+        if (source != NONE) ((SpectatorGroup.Slab) source).release();
+    }
+
+    /** Writes as much of the backlog as the socket takes, up to {@value #GATHER} buffers per system call. */
+    void flush() {
+        if (closed) return;
+        try {
+            while (!pending.isEmpty()) {
+                int count = 0;
+                for (ByteBuffer buffer : pending) {
+                    gather[count++] = buffer;
+                    if (count == GATHER) break;
+                }
+                channel.write(gather, 0, count);
+                Arrays.fill(gather, 0, count, null);
+                int written = 0;
+                while (!pending.isEmpty() && !pending.peek().hasRemaining()) {
+                    dequeue();
+                    written++;
+                }
+                if (written < count) break;
+            }
+            if (finishing && pending.isEmpty()) {
+                close();
+                return;
+            }
+            key.interestOps(pending.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } catch (IOException | CancelledKeyException e) {
+            close();
+        }
+    }
+
+    boolean isIdle() {
+        return pending.isEmpty();
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void close() {
+        if (closed) return;
+        closed = true;
+        releaseAll();
+        Metrics.INSTANCE.spectatorLeft();
+        if (key != null) key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.tictactoe;
+
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Everyone watching one room. The room encodes each batch of events once and hands the buffer over. Spectators are
+ * served after a short delay: the group's event loop, not the game thread, merges everything published since the
+ * last round into one buffer, queues a view of it for every spectator and writes their backlogs with gathering
+ * writes. The room's cost per batch is one copy however many people are watching, and a busy game costs each
+ * spectator one write per round rather than one per move.
+ *
+ * <p>The group also keeps the text of the current game, from the batch that started it, so a spectator who falls
+ * behind is brought up to date from here without touching the room or its lock.
+ */
+final class SpectatorGroup {
+    private static final Object CLOSE = new Object();
+    private static final int SLAB_BYTES = 256 * 1024;
+    private static final int POOLED_SLABS = 4;
+    private static final byte[] START_LINE = line(Message.START);
+    private static final byte[] RESET_LINE = line(Message.RESET);
+    private static final byte[] STATS_LINE = line(Message.STATS);
+
+    private final EventLoop loop;
+    private final ScheduledExecutorService timer;
+    private final long delayNanos;
+    private final Queue<Object> inbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final List<Spectator> spectators = new ArrayList<>();
+    private boolean closing = false;
+    private Slab slab = new Slab(ByteBuffer.allocateDirect(0));
+    /** Slabs no spectator is still writing from, ready to be filled again. */
+    private final Deque<ByteBuffer> freeSlabs = new ArrayDeque<>();
+    /** Everything since the current game began, then the latest STATS; only ever appended to, or replaced. */
+    private ByteBuffer history = ByteBuffer.allocate(0);
+    private byte[] lastStats;
+
+    /**
+     * Direct memory that published events are merged into. Each spectator holds it for as long as it has part of it
+     * left to write, and once it has been filled and let go by all of them it goes back to the pool.
+     */
+    final class Slab {
+        final ByteBuffer buffer;
+        private int holders;
+        private boolean full;
+
+        Slab(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        void hold() {
+            holders++;
+        }
+
+        void release() {
+            if (--holders == 0 && full) recycle(buffer);
+        }
+
+        void retire() {
+            full = true;
+            if (holders == 0) recycle(buffer);
+        }
+    }
+
+    /** A spectator who needs the whole room state before the events that follow it. */
+    private static final class Snapshot {
+        final Spectator spectator;
+        final ByteBuffer state;
+
+        Snapshot(Spectator spectator, ByteBuffer state) {
+            this.spectator = spectator;
+            this.state = state;
+        }
+    }
+
+    SpectatorGroup(EventLoop loop, ScheduledExecutorService timer, long delayNanos) {
+        this.loop = loop;
+        this.timer = timer;
+        this.delayNanos = delayNanos;
+    }
+
+    /** Called by the room, under its lock, with a buffer nobody will modify. */
+    void publish(ByteBuffer events) {
+        inbox.add(events);
+        scheduleDrain();
+    }
+
+    /** Called by the room, under its lock, so {@code state} is exactly what precedes the next published batch. */
+    void snapshot(Spectator spectator, ByteBuffer state) {
+        inbox.add(new Snapshot(spectator, state));
+        scheduleDrain();
+    }
+
+    /** Lets every spectator finish receiving what was published, then disconnects them. */
+    void close() {
+        inbox.add(CLOSE);
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            timer.schedule(() -> loop.execute(this::drain), delayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void drain() {
+        drainScheduled.set(false);
+        int merged = -1;
+        Object item;
+        while ((item = inbox.poll()) != null) {
+            if (item instanceof ByteBuffer) {
+                if (spectators.isEmpty()) continue;
+                ByteBuffer events = (ByteBuffer) item;
+                if (slab.buffer.remaining() < events.remaining()) {
+                    fanOut(merged);
+                    merged = -1;
+                    slab.retire();
+                    slab = new Slab(takeSlab(events.remaining()));
+                }
+                if (merged < 0) merged = slab.buffer.position();
+                slab.buffer.put(events.duplicate());
+                record(events);
+                continue;
+            }
+            fanOut(merged);
+            merged = -1;
+            if (item instanceof Snapshot) {
+                Snapshot snapshot = (Snapshot) item;
+                // the room state as of this point in the stream, so a new start for the history too
+                history = append(ByteBuffer.allocate(0), snapshot.state.duplicate());
+                rememberStats(snapshot.state);
+                if (!spectators.contains(snapshot.spectator)) {
+                    if (!snapshot.spectator.moveTo(this, loop)) continue;
+                    spectators.add(snapshot.spectator);
+                }
+                snapshot.spectator.restart(snapshot.state);
+            } else {
+                closing = true;
+            }
+        }
+        fanOut(merged);
+
+        Iterator<Spectator> it = spectators.iterator();
+        while (it.hasNext()) {
+            Spectator spectator = it.next();
+            spectator.flush();
+            if (closing && spectator.isIdle()) spectator.close();
+            if (spectator.isClosed()) it.remove();
+        }
+    }
+
+    /**
+     * Hands every spectator a read-only view of the events merged into the slab since {@code start}. The slab is
+     * direct memory, so the socket writes need no per-spectator copy; a full slab is replaced, and pooled again
+     * once the last spectator has written its part.
+     */
+    private void fanOut(int start) {
+        if (start < 0 || slab.buffer.position() == start) return;
+        ByteBuffer events = slab.buffer.slice(start, slab.buffer.position() - start).asReadOnlyBuffer();
+        for (Spectator spectator : spectators) spectator.queue(events, slab);
+    }
+
+    /** The current game so far, for a spectator who fell behind; called on the group's loop. */
+    ByteBuffer resync() {
+        return history.duplicate().flip().asReadOnlyBuffer();
+    }
+
+    private ByteBuffer takeSlab(int bytes) {
+        ByteBuffer free = (bytes <= SLAB_BYTES) ? freeSlabs.poll() : null;
+        return (free != null) ? free : ByteBuffer.allocateDirect(Math.max(SLAB_BYTES, bytes));
+    }
+
+    private void recycle(ByteBuffer buffer) {
+        if (buffer.capacity() == SLAB_BYTES && freeSlabs.size() < POOLED_SLABS) freeSlabs.push(buffer.clear());
+    }
+
+    /**
+     * Adds a published batch to the history. A batch that starts a game starts the history over, followed by the
+     * latest STATS, which only ever arrive at the end of a game.
+     */
+    private void record(ByteBuffer events) {
+        rememberStats(events);
+        if (startsWith(events, events.position(), START_LINE) || startsWith(events, events.position(), RESET_LINE)) {
+            history = append(ByteBuffer.allocate(0), events.duplicate());
+            if (lastStats != null) history = append(history, ByteBuffer.wrap(lastStats));
+        } else {
+            history = append(history, events.duplicate());
+        }
+    }
+
+    private void rememberStats(ByteBuffer events) {
+        for (int at = events.position(); at < events.limit(); ) {
+            int end = at;
+            while (end < events.limit() && events.get(end) != '\n') end++;
+            if (end < events.limit() && startsWith(events, at, STATS_LINE)) {
+                lastStats = new byte[end + 1 - at];
+                events.get(at, lastStats);
+            }
+            at = end + 1;
+        }
+    }
+
+    /**
+     * Appends {@code bytes} to {@code to}, into a new buffer if it is full. Bytes already written are never
+     * overwritten, so the views handed out by {@link #resync} stay valid.
+     */
+    private static ByteBuffer append(ByteBuffer to, ByteBuffer bytes) {
+        if (to.remaining() < bytes.remaining()) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(4096, 2 * (to.position() + bytes.remaining())));
+            to = grown.put(to.flip());
+        }
+        return to.put(bytes);
+    }
+
+    private static boolean startsWith(ByteBuffer events, int at, byte[] line) {
+        if (events.limit() - at < line.length) return false;
+        for (int i = 0; i < line.length; i++) {
+            if (events.get(at + i) != line[i]) return false;
+        }
+        return true;
+    }
+
+    /** The start of a text line of the given type, up to the space or newline after its name. */
+    private static byte[] line(int type) {
+        return Message.TYPE_NAMES[type].getBytes(StandardCharsets.US_ASCII);
+    }
+}
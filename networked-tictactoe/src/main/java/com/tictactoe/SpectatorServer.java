@@ -0,0 +1,130 @@
+package com.tictactoe;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+
+/**
+ * Accepts spectators on their own port and serves them from their own low-priority event loops, so fan-out to a
+ * crowd never shares a selector with the players, and batches their updates so it stays cheap on the CPU too.
+ * The same port serves recorded games on request.
+ */
+public class SpectatorServer {
+    private final int port;
+    private final RoomManager rooms;
+    /** Where recorded games are read from; null when games are not recorded. */
+    private final Path replayDir;
+    private final EventLoop[] loops;
+    private final long delayNanos;
+    private final ScheduledExecutorService timer =
+        Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("spectator-timer").factory());
+
+    public SpectatorServer(int port, int threads, long delayMillis, RoomManager rooms, Path replayDir)
+            throws IOException {
+        this.port = port;
+        this.rooms = rooms;
+        this.replayDir = replayDir;
+        this.delayNanos = TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        this.loops = new EventLoop[Math.max(1, threads)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop("spectator-loop-" + i, Thread.MIN_PRIORITY);
+        }
+    }
+
+    public void start() throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port), NioServer.BACKLOG);
+        server.configureBlocking(false);
+
+        for (EventLoop loop : loops) loop.start();
+        loops[0].execute(() -> {
+            try {
+                loops[0].register(server, SelectionKey.OP_ACCEPT, key -> accept(server));
+            } catch (ClosedChannelException e) {
+                System.err.println("Spectator server error: " + e.getMessage());
+            }
+        });
+        System.out.println("Spectators on port: " + port);
+    }
+
+    private void accept(ServerSocketChannel server) throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            Metrics.INSTANCE.spectatorJoined();
+            new Spectator(channel, loops[0], this).open();
+        }
+    }
+
+    /** Handles {@code WATCH [room]}; without a room number, picks the oldest game in progress. */
+    GameRoom watch(Spectator spectator, String request) {
+        String[] parts = request.split(" ");
+        if (!parts[0].equals("WATCH")) return null;
+        GameRoom room = null;
+        if (parts.length > 1) {
+            try {
+                room = rooms.getRoom(Integer.parseInt(parts[1]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        } else {
+            for (GameRoom candidate : rooms.getRooms()) {
+                if (candidate.isStarted() && (room == null || candidate.getId() < room.getId())) room = candidate;
+            }
+        }
+        EventLoop loop = loops[room == null ? 0 : room.getId() % loops.length];
+        if (room == null || !room.addSpectator(spectator, () -> new SpectatorGroup(loop, timer, delayNanos))) return null;
+        Log.info(Log.CONNECTION, room.getId(), 0, "spectator watching");
+        return room;
+    }
+
+    /**
+     * Handles {@code REPLAY <game>}, counting from 1 in the order games were recorded, as {@link ReplayTool} does.
+     * The segments are read on a thread of their own rather than the event loop; the game is then sent as the text
+     * lines its players received, and the connection closed.
+     */
+    boolean replay(Spectator spectator, String request) {
+        String[] parts = request.split(" ");
+        if (replayDir == null || parts.length != 2 || !parts[0].equals("REPLAY")) return false;
+        int game;
+        try {
+            game = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (game < 1) return false;
+        Log.info(Log.CONNECTION, 0, 0, "spectator replaying game " + game);
+        Thread.ofVirtual().name("replay-" + game).start(() -> {
+            ByteBuffer lines = null;
+            try {
+                lines = replayLines(game);
+            } catch (IOException e) {
+                Log.warn(Log.SERVER, 0, 0, "replay read failed: " + e);
+            }
+            ByteBuffer found = lines;
+            loops[0].execute(() -> spectator.finish(found));
+        });
+        return true;
+    }
+
+    /** The game as text protocol lines, or null if fewer than {@code game} games have been recorded. */
+    private ByteBuffer replayLines(int game) throws IOException {
+        Replay replay = new Replay();
+        try (ReplayReader reader = new ReplayReader(replayDir)) {
+            for (int i = 0; i < game; i++) {
+                if (!reader.next(replay)) return null;
+            }
+        }
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        ByteBuffer line = ByteBuffer.allocate(Protocol.MAX_FRAME_LENGTH);
+        replay.play(new Message(), message -> {
+            line.clear();
+            TextCodec.INSTANCE.encode(message, line);
+            lines.write(line.array(), 0, line.position());
+        });
+        return ByteBuffer.wrap(lines.toByteArray());
+    }
+}
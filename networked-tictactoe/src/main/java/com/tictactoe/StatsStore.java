@@ -0,0 +1,357 @@
+package com.tictactoe;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+import java.util.zip.*;
+
+/**
+ * Lifetime wins, losses and draws per player name, kept across restarts. Rooms hand finished games to
+ * {@link #record} and carry on; a writer thread collects whatever arrived during the commit interval, appends it to
+ * a memory-mapped log and forces the log to disk once for the whole batch. When the log fills up, the table is
+ * written out as a snapshot and a new log is started, so recovery reads one snapshot and at most one log.
+ */
+public class StatsStore {
+    public static final byte X_WINS = 'X';
+    public static final byte O_WINS = 'O';
+    public static final byte DRAW = 'D';
+
+    private static final int LOG_BYTES = 4 * 1024 * 1024;
+    private static final int SNAPSHOT_MAGIC = 0x54545453;
+    private static final int RECORD_HEADER = 8;
+    private static final int MAX_RECORD = RECORD_HEADER + 2 * (2 + 4 * Protocol.MAX_NAME_LENGTH) + 1;
+
+    private final Path directory;
+    private final long commitNanos;
+    private final Leaderboard leaderboard;
+    private final Map<String, PlayerStats> players = new ConcurrentHashMap<>();
+    private final Queue<Result> pending = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer record = ByteBuffer.allocate(MAX_RECORD);
+    private final CRC32 crc = new CRC32();
+    private final Thread thread;
+    private long generation;
+    private FileChannel logChannel;
+    private MappedByteBuffer log;
+    private volatile boolean closed = false;
+
+    private static final class Result {
+        final byte[] x;
+        final byte[] o;
+        final byte outcome;
+
+        Result(byte[] x, byte[] o, byte outcome) {
+            this.x = x;
+            this.o = o;
+            this.outcome = outcome;
+        }
+    }
+
+    /** One player's totals. Immutable, so readers on other threads always see a consistent row. */
+    public static final class PlayerStats {
+        final String name;
+        final int wins;
+        final int losses;
+        final int draws;
+
+        PlayerStats(String name, int wins, int losses, int draws) {
+            this.name = name;
+            this.wins = wins;
+            this.losses = losses;
+            this.draws = draws;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getWins() {
+            return wins;
+        }
+
+        public int getLosses() {
+            return losses;
+        }
+
+        public int getDraws() {
+            return draws;
+        }
+
+        public double getWinRatio() {
+            int games = wins + losses + draws;
+            return (games == 0) ? 0 : (double) wins / games;
+        }
+    }
+
+    public StatsStore(Path directory, long commitMillis, int leaderboardSize) throws IOException {
+        this.directory = directory;
+        this.commitNanos = TimeUnit.MILLISECONDS.toNanos(commitMillis);
+        this.leaderboard = new Leaderboard(leaderboardSize);
+        Files.createDirectories(directory);
+        recover();
+        this.thread = Thread.ofPlatform().daemon().name("stats-writer").unstarted(this::run);
+    }
+
+    public void start() {
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+    }
+
+    /** Queues a finished game between two named players; never blocks. */
+    public void record(byte[] xName, byte[] oName, byte outcome) {
+        if (closed) return;
+        pending.offer(new Result(xName, oName, outcome));
+    }
+
+    public PlayerStats get(String name) {
+        return players.get(name);
+    }
+
+    public int getPlayerCount() {
+        return players.size();
+    }
+
+    public List<PlayerStats> getLeaderboard() {
+        return leaderboard.top();
+    }
+
+    /** Renders the leaderboard as plain text, one player per line. */
+    public String renderLeaderboard() {
+        StringBuilder out = new StringBuilder();
+        int rank = 1;
+        for (PlayerStats stats : getLeaderboard()) {
+            out.append(rank++).append(". ").append(stats.name).append(" wins=").append(stats.wins)
+                .append(" losses=").append(stats.losses).append(" draws=").append(stats.draws).append('\n');
+        }
+        return out.toString();
+    }
+
+    /** Commits whatever is still queued. Called once on shutdown. */
+    public void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            LockSupport.parkNanos(commitNanos);
+            commit();
+        }
+        commit();
+        try {
+            logChannel.close();
+        } catch (IOException e) {
+            Log.warn(Log.SERVER, 0, 0, "stats log close failed: " + e);
+        }
+    }
+
+    /** Appends every queued result, then forces the log once for the whole batch. */
+    private void commit() {
+        int start = log.position();
+        int count = 0;
+        Result result;
+        try {
+            while ((result = pending.poll()) != null) {
+                if (log.remaining() < MAX_RECORD) {
+                    force(start);
+                    compact();
+                    start = log.position();
+                }
+                append(result);
+                apply(new String(result.x, StandardCharsets.UTF_8), new String(result.o, StandardCharsets.UTF_8),
+                    result.outcome);
+                count++;
+            }
+            if (count > 0) force(start);
+        } catch (IOException e) {
+            Log.error(Log.SERVER, 0, 0, "stats commit failed: " + e);
+        }
+    }
+
+    private void force(int start) {
+        if (log.position() > start) log.force(start, log.position() - start);
+    }
+
+    private void append(Result result) {
+        record.clear().position(RECORD_HEADER);
+        record.putShort((short) result.x.length).put(result.x);
+        record.putShort((short) result.o.length).put(result.o);
+        record.put(result.outcome);
+        int length = record.position() - RECORD_HEADER;
+        crc.reset();
+        crc.update(record.array(), RECORD_HEADER, length);
+        record.putInt(0, length).putInt(4, (int) crc.getValue());
+        log.put(record.flip());
+    }
+
+    private void apply(String x, String o, byte outcome) {
+        update(x, (outcome == X_WINS) ? 1 : 0, (outcome == O_WINS) ? 1 : 0, (outcome == DRAW) ? 1 : 0);
+        update(o, (outcome == O_WINS) ? 1 : 0, (outcome == X_WINS) ? 1 : 0, (outcome == DRAW) ? 1 : 0);
+    }
+
+    private void update(String name, int wins, int losses, int draws) {
+        PlayerStats old = players.get(name);
+        PlayerStats stats = (old == null)
+            ? new PlayerStats(name, wins, losses, draws)
+            : new PlayerStats(name, old.wins + wins, old.losses + losses, old.draws + draws);
+        players.put(name, stats);
+        leaderboard.update(old, stats);
+    }
+
+    /** Writes the whole table as the snapshot for the current log, then switches to a fresh, empty log. */
+    private void compact() throws IOException {
+        Path oldLog = logPath(generation);
+        writeSnapshot(generation);
+        logChannel.close();
+        Files.deleteIfExists(oldLog);
+        openLog(generation + 1);
+    }
+
+    private void writeSnapshot(long coveredGeneration) throws IOException {
+        Path temporary = directory.resolve("stats.snapshot.tmp");
+        CheckedOutputStream checked = new CheckedOutputStream(Files.newOutputStream(temporary), new CRC32());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(coveredGeneration);
+            out.writeInt(players.size());
+            for (PlayerStats stats : players.values()) {
+                out.writeUTF(stats.name);
+                out.writeInt(stats.wins);
+                out.writeInt(stats.losses);
+                out.writeInt(stats.draws);
+            }
+            out.flush();
+            out.writeLong(checked.getChecksum().getValue());
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve("stats.snapshot"), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Loads the snapshot, replays every newer log over it and continues appending to the newest one. */
+    private void recover() throws IOException {
+        long covered = -1;
+        Path snapshot = directory.resolve("stats.snapshot");
+        if (Files.exists(snapshot)) covered = readSnapshot(snapshot);
+
+        TreeMap<Long, Path> logs = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "results-*.log")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long logGeneration = Long.parseLong(name.substring(8, name.length() - 4));
+                if (logGeneration <= covered) Files.delete(file);
+                else logs.put(logGeneration, file);
+            }
+        }
+
+        int replayed = 0;
+        for (Map.Entry<Long, Path> entry : logs.entrySet()) {
+            openLog(entry.getKey());
+            replayed += replay();
+            if (!entry.getKey().equals(logs.lastKey())) logChannel.close();
+        }
+        if (logs.isEmpty()) openLog(covered + 1);
+        if (replayed > 0 || covered >= 0) {
+            Log.info(Log.SERVER, 0, 0, "stats: " + players.size() + " players, " + replayed + " results replayed");
+        }
+    }
+
+    private long readSnapshot(Path snapshot) throws IOException {
+        CheckedInputStream checked = new CheckedInputStream(
+            new BufferedInputStream(Files.newInputStream(snapshot)), new CRC32());
+        try (DataInputStream in = new DataInputStream(checked)) {
+            if (in.readInt() != SNAPSHOT_MAGIC) throw new IOException("Not a stats snapshot: " + snapshot);
+            long coveredGeneration = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                PlayerStats stats = new PlayerStats(in.readUTF(), in.readInt(), in.readInt(), in.readInt());
+                players.put(stats.name, stats);
+                leaderboard.update(null, stats);
+            }
+            long expected = checked.getChecksum().getValue();
+            if (in.readLong() != expected) throw new IOException("Corrupt stats snapshot: " + snapshot);
+            return coveredGeneration;
+        }
+    }
+
+    /** Applies every intact record of the open log and leaves the log positioned after the last one. */
+    private int replay() {
+        int count = 0;
+        while (log.remaining() >= RECORD_HEADER) {
+            int start = log.position();
+            int length = log.getInt(start);
+            if (length <= 0 || length > MAX_RECORD - RECORD_HEADER || length > log.remaining() - RECORD_HEADER) break;
+            crc.reset();
+            crc.update(log.slice(start + RECORD_HEADER, length));
+            if ((int) crc.getValue() != log.getInt(start + 4)) break;
+
+            log.position(start + RECORD_HEADER);
+            String x = readName();
+            String o = readName();
+            apply(x, o, log.get());
+            count++;
+        }
+        // wipe a torn tail so it can never be mistaken for a record once new ones are written after it
+        int end = Math.min(log.limit(), log.position() + MAX_RECORD);
+        for (int i = log.position(); i < end; i++) log.put(i, (byte) 0);
+        return count;
+    }
+
+    private String readName() {
+        byte[] bytes = new byte[log.getShort()];
+        log.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void openLog(long logGeneration) throws IOException {
+        generation = logGeneration;
+        logChannel = FileChannel.open(logPath(logGeneration),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        log = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, LOG_BYTES);
+    }
+
+    private Path logPath(long logGeneration) {
+        return directory.resolve("results-" + logGeneration + ".log");
+    }
+
+    /**
+     * The top players by wins, ties broken by name. Wins only ever go up, so a player can only leave the top by
+     * being overtaken, and each result is a remove and an insert in a set of at most {@code size} entries.
+     */
+    private static final class Leaderboard {
+        private static final Comparator<PlayerStats> ORDER =
+            Comparator.comparingInt((PlayerStats stats) -> -stats.wins).thenComparing(stats -> stats.name);
+
+        private final int size;
+        private final TreeSet<PlayerStats> top = new TreeSet<>(ORDER);
+        private volatile List<PlayerStats> published = List.of();
+
+        Leaderboard(int size) {
+            this.size = Math.max(1, size);
+        }
+
+        void update(PlayerStats old, PlayerStats stats) {
+            boolean changed = old != null && top.remove(old);
+            if (top.size() < size || ORDER.compare(stats, top.last()) < 0) {
+                top.add(stats);
+                if (top.size() > size) top.pollLast();
+                changed = true;
+            }
+            if (changed) published = List.copyOf(top);
+        }
+
+        List<PlayerStats> top() {
+            return published;
+        }
+    }
+}
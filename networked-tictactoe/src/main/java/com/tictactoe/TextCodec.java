@@ -0,0 +1,205 @@
+package com.tictactoe;
+
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+
+/** The original line protocol, written straight into the buffer without building intermediate strings. */
+public final class TextCodec implements Codec {
+    public static final TextCodec INSTANCE = new TextCodec();
+
+    private static final byte[][] TYPE_BYTES = new byte[Message.TYPE_NAMES.length][];
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final int[] REQUEST_TYPES =
+        {Message.MOVE, Message.RESTART_REQUEST, Message.RESTART_CONFIRM, Message.QUIT, Message.PONG};
+
+    static {
+        for (int i = 1; i < TYPE_BYTES.length; i++) {
+            TYPE_BYTES[i] = Message.TYPE_NAMES[i].getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private TextCodec() {
+    }
+
+    @Override
+    public void encode(Message m, ByteBuffer out) {
+        if (m.type == Message.NAME) {
+            out.put(m.name);
+            out.put((byte) '\n');
+            return;
+        }
+        out.put(TYPE_BYTES[m.type]);
+        switch (m.type) {
+            case Message.MOVE:
+                out.put((byte) ' ');
+                putInt(out, m.row);
+                out.put((byte) ' ');
+                putInt(out, m.col);
+                out.put((byte) ' ').put((byte) m.player);
+                break;
+            case Message.TURN:
+                out.put((byte) ' ').put((byte) m.player);
+                break;
+            case Message.WIN:
+                out.put((byte) ' ').put((byte) m.player);
+                out.put((byte) ' ').put(m.name);
+                for (int i = 0; i < m.cellCount; i++) {
+                    out.put((byte) ' ');
+                    putInt(out, m.getCellRow(i));
+                    out.put((byte) ' ');
+                    putInt(out, m.getCellCol(i));
+                }
+                break;
+            case Message.STATS:
+                out.put((byte) ' ');
+                putInt(out, m.xWins);
+                out.put((byte) ' ');
+                putInt(out, m.oWins);
+                out.put((byte) ' ');
+                putInt(out, m.draws);
+                break;
+            case Message.RESTART_CONFIRM:
+                out.put((byte) ' ').put(m.confirm ? TRUE : FALSE);
+                break;
+            case Message.SESSION:
+                out.put((byte) ' ').put(Long.toHexString(m.token).getBytes(StandardCharsets.US_ASCII));
+                break;
+            case Message.SEQ:
+                out.put((byte) ' ');
+                putInt(out, m.sequence);
+                break;
+            case Message.RESTART_REQUEST:
+            case Message.RESTART_DECLINED:
+            case Message.QUIT:
+                if (m.name != null) out.put((byte) ' ').put(m.name);
+                break;
+            default:
+                break;
+        }
+        out.put((byte) '\n');
+    }
+
+    /** Parses one received line. Unknown commands leave the message type as 0. */
+    public static void decode(String line, Message m) {
+        String[] parts = line.split(" ");
+        m.set(0);
+        for (int type = 1; type < Message.TYPE_NAMES.length; type++) {
+            if (type != Message.NAME && Message.TYPE_NAMES[type].equals(parts[0])) {
+                m.set(type);
+                break;
+            }
+        }
+        switch (m.type) {
+            case Message.MOVE:
+                m.move(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]), parts[3].charAt(0));
+                break;
+            case Message.TURN:
+                m.player(parts[1].charAt(0));
+                break;
+            case Message.WIN:
+                m.player(parts[1].charAt(0));
+                m.name(parts[2].getBytes(StandardCharsets.UTF_8));
+                int count = (parts.length - 3) / 2;
+                int[] cells = new int[count];
+                for (int i = 0; i < count; i++) {
+                    cells[i] = Integer.parseInt(parts[3 + 2 * i]) * 16 + Integer.parseInt(parts[4 + 2 * i]);
+                }
+                m.cells(cells, count, 16);
+                break;
+            case Message.STATS:
+                m.stats(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+                break;
+            case Message.RESTART_CONFIRM:
+                m.confirm(Boolean.parseBoolean(parts[1]));
+                break;
+            case Message.SESSION:
+                m.token(Long.parseUnsignedLong(parts[1], 16));
+                break;
+            case Message.SEQ:
+                m.sequence(Integer.parseInt(parts[1]));
+                break;
+            case Message.RESTART_REQUEST:
+            case Message.RESTART_DECLINED:
+            case Message.QUIT:
+                if (parts.length > 1) m.name(parts[1].getBytes(StandardCharsets.UTF_8));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Decodes a line from a player, which can only be a request: MOVE, RESTART_REQUEST, RESTART_CONFIRM, QUIT or
+     * PONG. False for anything else or anything malformed. Unlike {@link #decode} it never throws and allocates
+     * nothing, so bad input costs no more than good input.
+     */
+    static boolean decodeRequest(String line, Message m) {
+        int space = line.indexOf(' ');
+        int end = (space < 0) ? line.length() : space;
+        m.set(0);
+        for (int type : REQUEST_TYPES) {
+            String name = Message.TYPE_NAMES[type];
+            if (name.length() == end && line.startsWith(name)) {
+                m.set(type);
+                break;
+            }
+        }
+        switch (m.type) {
+            case Message.MOVE:
+                // MOVE <row> <col> <player>
+                int rowEnd = digitsEnd(line, end + 1);
+                if (rowEnd < 0 || rowEnd >= line.length() || line.charAt(rowEnd) != ' ') return false;
+                int colEnd = digitsEnd(line, rowEnd + 1);
+                if (colEnd < 0 || colEnd + 2 != line.length() || line.charAt(colEnd) != ' ') return false;
+                m.move(parseDigits(line, end + 1, rowEnd), parseDigits(line, rowEnd + 1, colEnd),
+                    line.charAt(colEnd + 1));
+                return true;
+            case Message.RESTART_CONFIRM:
+                if (space < 0) return false;
+                m.confirm(line.length() == end + 5 && line.regionMatches(true, end + 1, "true", 0, 4));
+                return true;
+            case Message.RESTART_REQUEST:
+            case Message.QUIT:
+            case Message.PONG:
+                // the server knows who is asking; a name after the type is ignored
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** The end of one or two digits starting at {@code start}, or -1 if there are none or more. */
+    private static int digitsEnd(String line, int start) {
+        int end = start;
+        while (end < line.length() && end - start <= 2 && line.charAt(end) >= '0' && line.charAt(end) <= '9') end++;
+        return (end == start || end - start > 2) ? -1 : end;
+    }
+
+    private static int parseDigits(String line, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) value = value * 10 + (line.charAt(i) - '0');
+        return value;
+    }
+
+    static void putInt(ByteBuffer out, int value) {
+        if (value < 0) {
+            out.put((byte) '-');
+            value = -value;
+        }
+        if (value < 10) {
+            out.put((byte) ('0' + value));
+            return;
+        }
+        int start = out.position();
+        while (value > 0) {
+            out.put((byte) ('0' + value % 10));
+            value /= 10;
+        }
+        for (int i = start, j = out.position() - 1; i < j; i++, j--) {
+            byte b = out.get(i);
+            out.put(i, out.get(j));
+            out.put(j, b);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.tictactoe;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * A hashed timing wheel: a ring of buckets that one thread advances every tick, running whatever has come due.
+ * A timeout goes into the bucket its deadline hashes to, with the number of full turns of the wheel still to wait,
+ * so scheduling and cancelling are O(1) however many timeouts are pending. Deadlines are only as precise as the
+ * tick, which suits heartbeats, idle timeouts and turn clocks, and lets every connection and game keep its own
+ * timers without a thread or an executor task each.
+ *
+ * <p>Tasks run on the wheel thread and must be short; anything that blocks belongs on another thread.
+ */
+public final class TimerWheel {
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+    private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+        AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+    private final long tickNanos;
+    private final Timeout[] buckets;
+    private final int mask;
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private final long startNanos = System.nanoTime();
+    private long tick = 0;
+
+    /** A scheduled task. Kept in a doubly linked list per bucket so a cancelled one can be unlinked directly. */
+    public final class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private long rounds;
+        private int bucket = -1;
+        private Timeout prev;
+        private Timeout next;
+        volatile int state = PENDING;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /** Stops the task from running. False if it has already run or been cancelled. */
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, PENDING, CANCELLED)) return false;
+            cancelled.offer(this);
+            return true;
+        }
+    }
+
+    /** {@code wheelSize} is rounded up to a power of two; a turn of the wheel is {@code wheelSize} ticks. */
+    public TimerWheel(long tickMillis, int wheelSize) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+        this.buckets = new Timeout[Integer.highestOneBit(Math.max(2, wheelSize) * 2 - 1)];
+        this.mask = buckets.length - 1;
+        this.thread = Thread.ofPlatform().daemon().name("timer-wheel").unstarted(this::run);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /** Runs {@code task} on the wheel thread once {@code delay} has passed, rounded up to the next tick. Never blocks. */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(task, System.nanoTime() - startNanos + unit.toNanos(delay));
+        added.offer(timeout);
+        return timeout;
+    }
+
+    private void run() {
+        while (true) {
+            long wakeAt = startNanos + (tick + 1) * tickNanos;
+            long sleep;
+            while ((sleep = wakeAt - System.nanoTime()) > 0) LockSupport.parkNanos(sleep);
+            unlinkCancelled();
+            transferAdded();
+            expire(buckets[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void unlinkCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket >= 0) unlink(timeout);
+        }
+    }
+
+    private void transferAdded() {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.state != PENDING) continue;
+            long dueTick = Math.max(timeout.deadline / tickNanos, tick);
+            timeout.rounds = (dueTick - tick) / buckets.length;
+            int index = (int) (dueTick & mask);
+            timeout.bucket = index;
+            timeout.next = buckets[index];
+            if (buckets[index] != null) buckets[index].prev = timeout;
+            buckets[index] = timeout;
+        }
+    }
+
+    private void expire(Timeout timeout) {
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.rounds > 0) {
+                timeout.rounds--;
+            } else {
+                unlink(timeout);
+                if (STATE.compareAndSet(timeout, PENDING, EXPIRED)) {
+                    try {
+                        timeout.task.run();
+                    } catch (RuntimeException e) {
+                        Log.error(Log.SERVER, 0, 0, "timer task failed: " + e);
+                    }
+                }
+            }
+            timeout = next;
+        }
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null) timeout.prev.next = timeout.next;
+        else buckets[timeout.bucket] = timeout.next;
+        if (timeout.next != null) timeout.next.prev = timeout.prev;
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+    }
+}
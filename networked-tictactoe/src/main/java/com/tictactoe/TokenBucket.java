@@ -0,0 +1,66 @@
+package com.tictactoe;
+
+import java.util.concurrent.*;
+
+/**
+ * Limits how many messages one connection may send: {@code perSecond} on average, with bursts of up to {@code burst}.
+ * The bucket is kept as a single timestamp, the time at which it will be full again if nothing more is taken,
+ * so a check is a clock read and a comparison and allocates nothing. Only the connection's reader uses it.
+ */
+final class TokenBucket {
+    /** What happens to a message that arrives with the bucket empty. */
+    enum Penalty {
+        /** Stop reading the connection until there is a token again, so TCP slows the sender down. */
+        THROTTLE,
+        /** Throw the message away. */
+        DROP,
+        /** Close the connection. */
+        DISCONNECT
+    }
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final Penalty penalty;
+    private final TimerWheel timers;
+    private long fullAt = Long.MIN_VALUE;
+
+    /** {@code timers} wakes throttled connections up again. */
+    TokenBucket(double perSecond, int burst, Penalty penalty, TimerWheel timers) {
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / perSecond));
+        this.burstNanos = intervalNanos * Math.max(1, burst);
+        this.penalty = penalty;
+        this.timers = timers;
+    }
+
+    Penalty getPenalty() {
+        return penalty;
+    }
+
+    /** True once nothing has been taken for long enough to refill the whole burst. */
+    boolean isFull(long now) {
+        return fullAt - now <= 0;
+    }
+
+    /** Takes a token if there is one. */
+    boolean tryTake(long now) {
+        long start = Math.max(fullAt, now);
+        if (start + intervalNanos - now > burstNanos) return false;
+        fullAt = start + intervalNanos;
+        return true;
+    }
+
+    /** Runs {@code task} on the timer thread once a token is available again. */
+    void whenAvailable(Runnable task) {
+        timers.schedule(task, nanosUntilAvailable(System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    /** Blocks the calling reader until a token is available again. */
+    void awaitAvailable() throws InterruptedException {
+        long wait = nanosUntilAvailable(System.nanoTime());
+        if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+    }
+
+    private long nanosUntilAvailable(long now) {
+        return Math.max(0, Math.max(fullAt, now) + intervalNanos - burstNanos - now);
+    }
+}